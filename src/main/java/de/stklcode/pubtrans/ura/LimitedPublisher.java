@@ -0,0 +1,208 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura;
+
+import de.stklcode.pubtrans.ura.exception.UraClientException;
+
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+/**
+ * Publisher that subscribes to its delegate only once a {@link RequestLimiter} permits the request.
+ * <p>
+ * The permit is held until the delegate completes, fails or the subscription is cancelled, so the concurrency limit
+ * covers the whole response, just like for list results.
+ *
+ * @param <T> Result type.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+final class LimitedPublisher<T> implements Flow.Publisher<T> {
+    private final Flow.Publisher<T> delegate;
+    private final RequestLimiter limiter;
+    private final String errorMessage;
+
+    /**
+     * Initialize the publisher.
+     *
+     * @param delegate     Publisher issuing the request.
+     * @param limiter      The limiter.
+     * @param errorMessage Message for exceptions raised if no permit is available.
+     */
+    LimitedPublisher(Flow.Publisher<T> delegate, RequestLimiter limiter, String errorMessage) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber must not be null");
+
+        LimitedSubscription subscription = new LimitedSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        limiter.acquireAsync().whenComplete(subscription::permitted);
+    }
+
+    /**
+     * Subscription that buffers demand until the permit is granted and releases the permit once the delegate has
+     * terminated.
+     */
+    private final class LimitedSubscription implements Flow.Subscription, Flow.Subscriber<T> {
+        private final Flow.Subscriber<? super T> downstream;
+        private RequestLimiter.Permit permit;
+        private Flow.Subscription upstream;
+        private long requested;
+        private boolean invalid;
+        private long invalidRequest;
+        private boolean cancelled;
+
+        /**
+         * Initialize the subscription.
+         *
+         * @param downstream Downstream subscriber.
+         */
+        private LimitedSubscription(Flow.Subscriber<? super T> downstream) {
+            this.downstream = downstream;
+        }
+
+        /**
+         * Subscribe to the delegate once the permit has been granted or fail, if it has been rejected.
+         *
+         * @param permit    The permit, {@code null} if rejected.
+         * @param throwable Rejection cause, {@code null} if permitted.
+         */
+        private void permitted(RequestLimiter.Permit permit, Throwable throwable) {
+            if (throwable != null) {
+                synchronized (this) {
+                    if (cancelled) {
+                        return;
+                    }
+                    cancelled = true;
+                }
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable;
+                downstream.onError(new UraClientException(errorMessage, cause));
+                return;
+            }
+
+            boolean c;
+            synchronized (this) {
+                c = cancelled;
+                if (!c) {
+                    this.permit = permit;
+                }
+            }
+            if (!c) {
+                delegate.subscribe(this);
+            } else {
+                // Subscription has been cancelled in the meantime.
+                permit.cancel();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            Flow.Subscription s;
+            synchronized (this) {
+                s = upstream;
+                if (s == null) {
+                    if (n <= 0) {
+                        // Forward the invalid request to the delegate, which signals the error.
+                        if (!invalid) {
+                            invalid = true;
+                            invalidRequest = n;
+                        }
+                    } else {
+                        requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                    }
+                    return;
+                }
+            }
+            s.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription s;
+            RequestLimiter.Permit p;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                s = upstream;
+                p = permit;
+            }
+            if (s != null) {
+                // Request has been sent, so it counts for the concurrency limit like a closed response body.
+                s.cancel();
+                p.release(true);
+            } else if (p != null) {
+                p.cancel();
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            long n;
+            boolean i;
+            boolean c;
+            synchronized (this) {
+                upstream = subscription;
+                i = invalid;
+                n = i ? invalidRequest : requested;
+                requested = 0;
+                c = cancelled;
+            }
+            if (c) {
+                subscription.cancel();
+            } else if (i || n > 0) {
+                subscription.request(n);
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            downstream.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // Invalid demand is caused by the subscriber, not by the server.
+            permit().release(throwable instanceof IllegalArgumentException);
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            permit().release(true);
+            downstream.onComplete();
+        }
+
+        /**
+         * Get the permit of the running request.
+         *
+         * @return The permit.
+         */
+        private synchronized RequestLimiter.Permit permit() {
+            return permit;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalescing of concurrent identical requests.
+ * <p>
+ * The first caller for a request URL loads the result, all callers arriving while this request is in flight wait for
+ * and share its result. Results must be immutable, as they are passed to multiple callers.
+ * Once the request has completed, the next caller issues a new request.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+final class RequestCoalescer {
+    private final ConcurrentMap<String, CompletableFuture<List<?>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Load a result, or wait for the identical request currently in flight.
+     *
+     * @param url    Request URL.
+     * @param loader Loader for the result, only invoked if no identical request is in flight.
+     * @param <T>    Result type.
+     * @return The result.
+     * @throws IOException Error loading the result.
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> load(final String url, final Loader<T> loader) throws IOException {
+        CompletableFuture<List<?>> own = new CompletableFuture<>();
+        CompletableFuture<List<?>> pending = inFlight.putIfAbsent(url, own);
+        if (pending != null) {
+            try {
+                return (List<T>) pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("API request interrupted", e);
+            } catch (ExecutionException | CancellationException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IOException(cause.getMessage(), cause);
+            }
+        }
+
+        try {
+            List<T> result = loader.load();
+            complete(url, own, result, null);
+            return result;
+        } catch (Throwable e) {
+            // Complete on any error, so the request is never left in flight for waiting callers.
+            complete(url, own, null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Load a result asynchronously, or join the identical request currently in flight.
+     *
+     * @param url    Request URL.
+     * @param loader Loader for the result, only invoked if no identical request is in flight.
+     * @param <T>    Result type.
+     * @return Future of the result.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    <T> CompletableFuture<List<T>> loadAsync(final String url, final Supplier<CompletableFuture<List<T>>> loader) {
+        CompletableFuture<List<?>> own = new CompletableFuture<>();
+        CompletableFuture<List<?>> pending = inFlight.putIfAbsent(url, own);
+        if (pending != null) {
+            // Return a dependent future, so callers cannot complete or cancel the shared one.
+            return (CompletableFuture) pending.thenApply(result -> result);
+        }
+
+        CompletableFuture<List<T>> result;
+        try {
+            result = loader.get();
+        } catch (RuntimeException e) {
+            complete(url, own, null, e);
+            return CompletableFuture.failedFuture(e);
+        } catch (Error e) {
+            complete(url, own, null, e);
+            throw e;
+        }
+        result.whenComplete((list, throwable) -> complete(
+            url,
+            own,
+            list,
+            throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable
+        ));
+        return result;
+    }
+
+    /**
+     * Get the number of requests currently in flight.
+     *
+     * @return Number of requests.
+     */
+    int size() {
+        return inFlight.size();
+    }
+
+    /**
+     * Get the number of callers waiting for the request to the given URL currently in flight.
+     * The value is an estimate for monitoring and tests.
+     *
+     * @param url Request URL.
+     * @return Number of waiting callers, {@code 0} if no request is in flight.
+     */
+    int waiting(final String url) {
+        CompletableFuture<List<?>> pending = inFlight.get(url);
+        return pending != null ? pending.getNumberOfDependents() : 0;
+    }
+
+    /**
+     * Remove a request from the in-flight map and pass its result to waiting callers.
+     *
+     * @param url    Request URL.
+     * @param future Future of the request.
+     * @param result The result, if successful.
+     * @param error  The error, if failed.
+     */
+    private void complete(final String url, final CompletableFuture<List<?>> future, final List<?> result,
+                          final Throwable error) {
+        inFlight.remove(url, future);
+        if (error == null) {
+            future.complete(result);
+        } else {
+            future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Loader for a result that may throw an {@link IOException}.
+     *
+     * @param <T> Result type.
+     */
+    @FunctionalInterface
+    interface Loader<T> {
+        /**
+         * Load the result.
+         *
+         * @return The result.
+         * @throws IOException Error loading the result.
+         */
+        List<T> load() throws IOException;
+    }
+}
@@ -0,0 +1,593 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura;
+
+import de.stklcode.pubtrans.ura.exception.UraClientException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side limiter for requests to the URA API.
+ * <p>
+ * Each request requires a permit, which is only granted if both limits allow it:
+ * <ul>
+ *     <li>A token bucket limits the request rate. Tokens are refilled at a constant rate up to the burst size.</li>
+ *     <li>An adaptive limit bounds the number of concurrent requests. It grows additively by one per round of
+ *     successful requests below the latency threshold and shrinks multiplicatively on failed or slow requests
+ *     (AIMD), so the client backs off as soon as the server shows signs of overload.</li>
+ * </ul>
+ * If no permit is available, the request waits in FIFO order. The maximum wait time selects the behavior: wait
+ * indefinitely, fail fast or fail after a deadline. Rejected requests fail with an {@link UraClientException}.
+ * <p>
+ * A permit is held until the response body has been read completely or closed, so the concurrency limit and the
+ * latency samples cover the transfer of the body, not only the time to the first byte.
+ * <p>
+ * A limiter can be shared by multiple clients to apply a common quota. If serialized, only its settings are retained.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public final class RequestLimiter implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final double rate;
+    private final int burst;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final Duration latencyThreshold;
+    private final double backoff;
+    private final Duration maxWait;
+    private final Clock clock;
+
+    private final transient Queue<Waiter> waiters;
+    private final transient AtomicLong rejected;
+    private transient double tokens;
+    private transient long refilled;
+    private transient double limit;
+    private transient int inFlight;
+    private transient long wakeup;
+
+    /**
+     * Initialize the limiter.
+     *
+     * @param rate             Permits per second.
+     * @param burst            Maximum number of tokens.
+     * @param initialLimit     Initial concurrency limit.
+     * @param minLimit         Minimum concurrency limit.
+     * @param maxLimit         Maximum concurrency limit.
+     * @param latencyThreshold Latency above which the limit is decreased, {@code null} to only consider failures.
+     * @param backoff          Factor to decrease the limit by.
+     * @param maxWait          Maximum time to wait for a permit, {@code null} to wait indefinitely.
+     * @param clock            Clock to refill tokens and measure latency.
+     */
+    private RequestLimiter(double rate, int burst, int initialLimit, int minLimit, int maxLimit,
+                           Duration latencyThreshold, double backoff, Duration maxWait, Clock clock) {
+        this.rate = rate;
+        this.burst = burst;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThreshold = latencyThreshold;
+        this.backoff = backoff;
+        this.maxWait = maxWait;
+        this.clock = clock;
+        this.waiters = new ArrayDeque<>();
+        this.rejected = new AtomicLong();
+        this.tokens = burst;
+        this.refilled = clock.millis();
+        this.limit = initialLimit;
+        this.inFlight = 0;
+        this.wakeup = Long.MAX_VALUE;
+    }
+
+    /**
+     * Get new {@link Builder} with default values, i.e. 10 requests per second with a burst of 10, a concurrency
+     * limit between 1 and 100 starting at 10, a latency threshold of 1 second, a backoff factor of 0.9 and
+     * indefinite waiting.
+     *
+     * @return Limiter Builder instance.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Acquire a permit, blocking the calling thread until it is available.
+     *
+     * @return The permit.
+     * @throws IOException No permit available within the maximum wait time or interrupted while waiting.
+     */
+    Permit acquire() throws IOException {
+        CompletableFuture<Permit> future = acquireAsync();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                // Permit has been granted concurrently, return it unused.
+                future.thenAccept(Permit::cancel);
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("API request interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Acquire a permit asynchronously.
+     *
+     * @return Future of the permit, completes exceptionally if no permit is available within the maximum wait time.
+     */
+    CompletableFuture<Permit> acquireAsync() {
+        synchronized (this) {
+            if (waiters.isEmpty() && tryAcquire()) {
+                return CompletableFuture.completedFuture(new Permit(clock.millis()));
+            } else if (maxWait != null && maxWait.isZero()) {
+                rejected.incrementAndGet();
+                return CompletableFuture.failedFuture(new UraClientException("Request limit exceeded", null));
+            }
+        }
+
+        Waiter waiter = new Waiter(
+            new CompletableFuture<>(),
+            maxWait == null ? Long.MAX_VALUE : clock.millis() + maxWait.toMillis()
+        );
+        synchronized (this) {
+            waiters.add(waiter);
+        }
+        drain();
+        return waiter.future;
+    }
+
+    /**
+     * Grant permits to waiting requests in order, reject expired ones and schedule the next check.
+     */
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        long delay;
+        synchronized (this) {
+            long now = clock.millis();
+            boolean blocked = false;
+            Iterator<Waiter> it = waiters.iterator();
+            while (it.hasNext()) {
+                Waiter waiter = it.next();
+                if (waiter.future.isDone()) {
+                    it.remove();
+                } else if (waiter.deadline <= now) {
+                    it.remove();
+                    expired.add(waiter);
+                } else if (!blocked && tryAcquire()) {
+                    it.remove();
+                    granted.add(waiter);
+                } else {
+                    // Keep FIFO order, later waiters are only checked for expiry.
+                    blocked = true;
+                }
+            }
+
+            // Wake up when the next token is available or the earliest deadline has passed.
+            delay = Long.MAX_VALUE;
+            if (!waiters.isEmpty()) {
+                if (tokens < 1.0) {
+                    delay = (long) Math.ceil((1.0 - tokens) * 1000.0 / rate);
+                }
+                for (Waiter waiter : waiters) {
+                    delay = Math.min(delay, waiter.deadline - now);
+                }
+            }
+            if (delay == Long.MAX_VALUE || now + delay >= wakeup) {
+                delay = -1;
+            } else {
+                wakeup = now + delay;
+            }
+        }
+
+        for (Waiter waiter : granted) {
+            Permit permit = new Permit(clock.millis());
+            if (!waiter.future.complete(permit)) {
+                // Waiter has been cancelled in the meantime.
+                permit.cancel();
+            }
+        }
+        for (Waiter waiter : expired) {
+            rejected.incrementAndGet();
+            waiter.future.completeExceptionally(
+                new UraClientException("Request limit exceeded, no permit within " + maxWait, null)
+            );
+        }
+        if (delay >= 0) {
+            CompletableFuture.delayedExecutor(Math.max(delay, 1), TimeUnit.MILLISECONDS).execute(this::wakeup);
+        }
+    }
+
+    /**
+     * Scheduled check of waiting requests.
+     */
+    private void wakeup() {
+        synchronized (this) {
+            wakeup = Long.MAX_VALUE;
+        }
+        drain();
+    }
+
+    /**
+     * Take a token and a concurrency slot, if both are available.
+     * Must be called while holding the lock.
+     *
+     * @return {@code true}, if acquired.
+     */
+    private boolean tryAcquire() {
+        long now = clock.millis();
+        if (now > refilled) {
+            tokens = Math.min(burst, tokens + (now - refilled) * rate / 1000.0);
+            refilled = now;
+        }
+        if (tokens >= 1.0 && inFlight < (int) limit) {
+            tokens -= 1.0;
+            inFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Return a concurrency slot and adapt the limit.
+     *
+     * @param latency Latency of the request in milliseconds, negative if the request has not been sent.
+     * @param success Whether the request succeeded.
+     */
+    private void release(long latency, boolean success) {
+        synchronized (this) {
+            inFlight--;
+            if (latency < 0) {
+                // Request has not been sent, keep the limit.
+            } else if (!success || latencyThreshold != null && latency > latencyThreshold.toMillis()) {
+                limit = Math.max(minLimit, limit * backoff);
+            } else if ((inFlight + 1) * 2 >= limit) {
+                // Only grow the limit if at least half of it has been used.
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Get the current concurrency limit.
+     *
+     * @return Maximum number of concurrent requests.
+     */
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * Get the number of requests currently holding a permit.
+     *
+     * @return Number of requests in flight.
+     */
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Get the number of requests waiting for a permit.
+     *
+     * @return Number of waiting requests.
+     */
+    public synchronized int waiting() {
+        return waiters.size();
+    }
+
+    /**
+     * Get the number of requests rejected, because no permit was available within the maximum wait time.
+     *
+     * @return Number of rejected requests.
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Create a limiter with the same settings and initial state on deserialization.
+     *
+     * @return The limiter.
+     */
+    @Serial
+    private Object readResolve() {
+        return new RequestLimiter(rate, burst, initialLimit, minLimit, maxLimit, latencyThreshold, backoff, maxWait,
+            clock);
+    }
+
+    /**
+     * Request waiting for a permit.
+     *
+     * @param future   Future to complete with the permit.
+     * @param deadline Deadline in epoch milliseconds.
+     */
+    private record Waiter(CompletableFuture<Permit> future, long deadline) {
+    }
+
+    /**
+     * Permit for a single request. It must be released exactly once after the request has completed.
+     */
+    final class Permit {
+        private final long acquired;
+        private boolean released;
+
+        /**
+         * Initialize the permit.
+         *
+         * @param acquired Time of acquisition in epoch milliseconds.
+         */
+        private Permit(long acquired) {
+            this.acquired = acquired;
+        }
+
+        /**
+         * Release the permit after the request has completed.
+         *
+         * @param success Whether the request succeeded, i.e. the server did not fail or throttle it.
+         */
+        void release(boolean success) {
+            if (markReleased()) {
+                RequestLimiter.this.release(Math.max(clock.millis() - acquired, 0), success);
+            }
+        }
+
+        /**
+         * Bind the permit to a response body, so the concurrency limit also covers the body transfer.
+         * The permit is released once the body has been read completely or closed. Read errors count as failed
+         * requests.
+         *
+         * @param body Response body.
+         * @return Body stream that releases the permit.
+         */
+        InputStream releaseOnClose(InputStream body) {
+            return new PermitInputStream(body, this);
+        }
+
+        /**
+         * Release the permit without sending the request.
+         */
+        void cancel() {
+            if (markReleased()) {
+                RequestLimiter.this.release(-1, true);
+            }
+        }
+
+        /**
+         * Mark the permit as released.
+         *
+         * @return {@code true}, if not released before.
+         */
+        private synchronized boolean markReleased() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
+    }
+
+    /**
+     * Response body that releases a permit at the end of the stream, on read errors or when closed.
+     */
+    private static final class PermitInputStream extends FilterInputStream {
+        private final Permit permit;
+
+        /**
+         * Initialize the stream.
+         *
+         * @param in     Response body.
+         * @param permit Permit of the request.
+         */
+        private PermitInputStream(InputStream in, Permit permit) {
+            super(in);
+            this.permit = permit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                int b = super.read();
+                if (b < 0) {
+                    permit.release(true);
+                }
+                return b;
+            } catch (IOException e) {
+                permit.release(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                int n = super.read(b, off, len);
+                if (n < 0) {
+                    permit.release(true);
+                }
+                return n;
+            } catch (IOException e) {
+                permit.release(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            permit.release(true);
+            super.close();
+        }
+    }
+
+    /**
+     * Builder for {@link RequestLimiter} instances.
+     */
+    public static class Builder {
+        private double rate;
+        private int burst;
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+        private Duration latencyThreshold;
+        private double backoff;
+        private Duration maxWait;
+        private Clock clock;
+
+        /**
+         * Initialize the builder with default values, i.e. 10 requests per second with a burst of 10, a concurrency
+         * limit between 1 and 100 starting at 10, a latency threshold of 1 second, a backoff factor of 0.9 and
+         * indefinite waiting.
+         * Use {@link RequestLimiter#builder()} to get a builder instance.
+         */
+        private Builder() {
+            this.rate = 10.0;
+            this.burst = 10;
+            this.initialLimit = 10;
+            this.minLimit = 1;
+            this.maxLimit = 100;
+            this.latencyThreshold = Duration.ofSeconds(1);
+            this.backoff = 0.9;
+            this.maxWait = null;
+            this.clock = Clock.systemUTC();
+        }
+
+        /**
+         * Specify the sustained request rate.
+         *
+         * @param rate Permits per second.
+         * @return The builder.
+         */
+        public Builder withRate(double rate) {
+            this.rate = rate;
+            return this;
+        }
+
+        /**
+         * Specify the burst size, i.e. the number of requests that can be sent at once after an idle period.
+         *
+         * @param burst Maximum number of tokens.
+         * @return The builder.
+         */
+        public Builder withBurst(int burst) {
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * Specify the bounds of the adaptive concurrency limit.
+         *
+         * @param initialLimit Initial limit.
+         * @param minLimit     Minimum limit.
+         * @param maxLimit     Maximum limit.
+         * @return The builder.
+         */
+        public Builder withConcurrency(int initialLimit, int minLimit, int maxLimit) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Specify the latency threshold. Requests slower than this decrease the concurrency limit like failures.
+         * If {@code null}, the limit is only decreased by failures.
+         *
+         * @param latencyThreshold Latency threshold.
+         * @return The builder.
+         */
+        public Builder withLatencyThreshold(Duration latencyThreshold) {
+            this.latencyThreshold = latencyThreshold;
+            return this;
+        }
+
+        /**
+         * Specify the factor to decrease the concurrency limit by on failed or slow requests.
+         *
+         * @param backoff Backoff factor ({@code 0 < backoff < 1}).
+         * @return The builder.
+         */
+        public Builder withBackoff(double backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        /**
+         * Specify the maximum time to wait for a permit.
+         * If {@code null} (default), requests wait indefinitely. If {@link Duration#ZERO}, requests fail fast if no
+         * permit is available immediately. Otherwise, requests fail once the deadline has passed.
+         *
+         * @param maxWait Maximum wait time.
+         * @return The builder.
+         */
+        public Builder withMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * Specify the clock to refill tokens and measure latency.
+         *
+         * @param clock The clock.
+         * @return The builder.
+         */
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Finally build the limiter.
+         *
+         * @return The limiter.
+         */
+        public RequestLimiter build() {
+            Objects.requireNonNull(clock, "clock must not be null");
+            if (!(rate > 0.0) || burst < 1) {
+                throw new IllegalArgumentException("Rate and burst must be positive");
+            } else if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+                throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+            } else if (!(backoff > 0.0 && backoff < 1.0)) {
+                throw new IllegalArgumentException("Backoff must be between 0 and 1");
+            } else if (maxWait != null && maxWait.isNegative()) {
+                throw new IllegalArgumentException("Maximum wait time must not be negative");
+            }
+            return new RequestLimiter(rate, burst, initialLimit, minLimit, maxLimit, latencyThreshold, backoff,
+                maxWait, clock);
+        }
+    }
+}
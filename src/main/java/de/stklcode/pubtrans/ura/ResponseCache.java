@@ -0,0 +1,324 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura;
+
+import de.stklcode.pubtrans.ura.model.Message;
+import de.stklcode.pubtrans.ura.model.Stop;
+import de.stklcode.pubtrans.ura.model.Trip;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache for results of instant queries.
+ * <p>
+ * Results are cached by request URL, so only identical queries share an entry. Each result type has its own
+ * time-to-live, e.g. stops can be kept for hours while trip predictions are only valid for a few seconds.
+ * The number of entries is bounded, least recently used entries are evicted first.
+ * <p>
+ * Cached results are immutable lists shared by all callers. Lazily decoded streams and publishers are not cached.
+ * A cache instance can be shared by multiple clients. If serialized, only its settings are retained.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public final class ResponseCache implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final Duration tripTtl;
+    private final Duration stopTtl;
+    private final Duration messageTtl;
+    private final int maximumSize;
+    private final Clock clock;
+
+    private final transient Map<String, Entry> entries;
+    private final transient AtomicLong hits;
+    private final transient AtomicLong misses;
+    private final transient AtomicLong evictions;
+
+    /**
+     * Initialize the cache.
+     *
+     * @param tripTtl     Time-to-live for trips.
+     * @param stopTtl     Time-to-live for stops.
+     * @param messageTtl  Time-to-live for messages.
+     * @param maximumSize Maximum number of cached responses.
+     * @param clock       Clock to determine expiry.
+     */
+    private ResponseCache(Duration tripTtl, Duration stopTtl, Duration messageTtl, int maximumSize, Clock clock) {
+        this.tripTtl = tripTtl;
+        this.stopTtl = stopTtl;
+        this.messageTtl = messageTtl;
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ResponseCache.this.maximumSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+
+    /**
+     * Get new {@link Builder} with default values, i.e. trips are cached for 10 seconds, stops for 6 hours and
+     * messages for 1 minute with a maximum of 1000 responses.
+     *
+     * @return Cache Builder instance.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get a cached result.
+     *
+     * @param url Request URL.
+     * @param <T> Result type.
+     * @return The cached result or {@code null}, if not present or expired.
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> get(String url) {
+        synchronized (entries) {
+            Entry entry = entries.get(url);
+            if (entry != null && entry.expires - clock.millis() > 0) {
+                hits.incrementAndGet();
+                return (List<T>) entry.results;
+            } else if (entry != null) {
+                entries.remove(url);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Cache a result.
+     * Results of types without time-to-live are not cached.
+     *
+     * @param url     Request URL.
+     * @param type    Result type.
+     * @param results Immutable list of results.
+     */
+    void put(String url, Class<?> type, List<?> results) {
+        Duration ttl = ttl(type);
+        if (ttl == null || ttl.isZero()) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(url, new Entry(results, clock.millis() + ttl.toMillis()));
+        }
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Get the number of cached responses, including expired ones that have not been removed yet.
+     *
+     * @return Number of entries.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Get the number of requests served from the cache.
+     *
+     * @return Number of hits.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of requests not served from the cache.
+     *
+     * @return Number of misses.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of responses evicted to satisfy the size limit.
+     *
+     * @return Number of evictions.
+     */
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Get the time-to-live for the given result type.
+     *
+     * @param type Result type.
+     * @return The time-to-live, {@code null} for unknown types.
+     */
+    private Duration ttl(Class<?> type) {
+        if (type == Trip.class) {
+            return tripTtl;
+        } else if (type == Stop.class) {
+            return stopTtl;
+        } else if (type == Message.class) {
+            return messageTtl;
+        }
+        return null;
+    }
+
+    /**
+     * Create an empty cache with the same settings on deserialization.
+     *
+     * @return The cache.
+     */
+    @Serial
+    private Object readResolve() {
+        return new ResponseCache(tripTtl, stopTtl, messageTtl, maximumSize, clock);
+    }
+
+    /**
+     * Cached result.
+     *
+     * @param results Immutable list of results.
+     * @param expires Expiry time in epoch milliseconds.
+     */
+    private record Entry(List<?> results, long expires) {
+    }
+
+    /**
+     * Builder for {@link ResponseCache} instances.
+     */
+    public static class Builder {
+        private Duration tripTtl;
+        private Duration stopTtl;
+        private Duration messageTtl;
+        private int maximumSize;
+        private Clock clock;
+
+        /**
+         * Initialize the builder with default values, i.e. trips are cached for 10 seconds, stops for 6 hours and
+         * messages for 1 minute with a maximum of 1000 responses.
+         * Use {@link ResponseCache#builder()} to get a builder instance.
+         */
+        private Builder() {
+            this.tripTtl = Duration.ofSeconds(10);
+            this.stopTtl = Duration.ofHours(6);
+            this.messageTtl = Duration.ofMinutes(1);
+            this.maximumSize = 1000;
+            this.clock = Clock.systemUTC();
+        }
+
+        /**
+         * Specify the time-to-live for trips.
+         * Use {@link Duration#ZERO} to disable caching of trips.
+         *
+         * @param tripTtl Time-to-live.
+         * @return The builder.
+         */
+        public Builder withTripTtl(Duration tripTtl) {
+            this.tripTtl = tripTtl;
+            return this;
+        }
+
+        /**
+         * Specify the time-to-live for stops.
+         * Use {@link Duration#ZERO} to disable caching of stops.
+         *
+         * @param stopTtl Time-to-live.
+         * @return The builder.
+         */
+        public Builder withStopTtl(Duration stopTtl) {
+            this.stopTtl = stopTtl;
+            return this;
+        }
+
+        /**
+         * Specify the time-to-live for messages.
+         * Use {@link Duration#ZERO} to disable caching of messages.
+         *
+         * @param messageTtl Time-to-live.
+         * @return The builder.
+         */
+        public Builder withMessageTtl(Duration messageTtl) {
+            this.messageTtl = messageTtl;
+            return this;
+        }
+
+        /**
+         * Specify the maximum number of cached responses.
+         *
+         * @param maximumSize Maximum number of entries.
+         * @return The builder.
+         */
+        public Builder withMaximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Specify the clock to determine expiry.
+         *
+         * @param clock The clock.
+         * @return The builder.
+         */
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Finally build the cache.
+         *
+         * @return The cache.
+         */
+        public ResponseCache build() {
+            Objects.requireNonNull(tripTtl, "tripTtl must not be null");
+            Objects.requireNonNull(stopTtl, "stopTtl must not be null");
+            Objects.requireNonNull(messageTtl, "messageTtl must not be null");
+            Objects.requireNonNull(clock, "clock must not be null");
+            if (tripTtl.isNegative() || stopTtl.isNegative() || messageTtl.isNegative()) {
+                throw new IllegalArgumentException("Time-to-live must not be negative");
+            } else if (maximumSize < 1) {
+                throw new IllegalArgumentException("Maximum size must be positive");
+            }
+            return new ResponseCache(tripTtl, stopTtl, messageTtl, maximumSize, clock);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura;
+
+import de.stklcode.pubtrans.ura.exception.UraClientException;
+import de.stklcode.pubtrans.ura.model.Trip;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Front end that merges trip queries for single stops into batch requests.
+ * <p>
+ * Stop IDs requested within a short window are collected and fetched with a single query for all of them. The
+ * resulting trips are routed back to the future of each requested stop by stop ID. A batch is sent as soon as it
+ * reaches the maximum number of stops, or when the window has elapsed since the first stop of the batch has been
+ * requested. Identical stop IDs within a batch share a single result.
+ * <p>
+ * Results are immutable lists of trips in response order. If the batch request fails, the futures of all stops of
+ * the batch complete exceptionally with the same {@link UraClientException}.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class TripBatcher implements AutoCloseable {
+    private final UraClient client;
+    private final Duration window;
+    private final int maxStops;
+    private final Executor executor;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private Map<String, CompletableFuture<List<Trip>>> batch;
+    private long generation;
+    private boolean closed;
+
+    /**
+     * Initialize the batcher.
+     * Use {@link #forClient(UraClient)} to get a builder.
+     *
+     * @param client   Client to issue batch requests.
+     * @param window   Maximum time to wait for more stops.
+     * @param maxStops Maximum number of stops per batch.
+     * @param executor Executor for time-triggered batches, {@code null} to use the common pool.
+     */
+    private TripBatcher(UraClient client, Duration window, int maxStops, Executor executor) {
+        if (maxStops < 1) {
+            throw new IllegalArgumentException("Maximum number of stops must be positive");
+        }
+        this.client = Objects.requireNonNull(client, "client must not be null");
+        this.window = Objects.requireNonNull(window, "window must not be null");
+        this.maxStops = maxStops;
+        this.executor = executor;
+        this.batch = new LinkedHashMap<>();
+    }
+
+    /**
+     * Get new {@link Builder} for the given client.
+     *
+     * @param client Client to issue batch requests.
+     * @return Builder instance.
+     */
+    public static Builder forClient(UraClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * Get trips for the given stop ID with the next batch.
+     * Requests after {@link #close()} fail with an {@link IllegalStateException}.
+     *
+     * @param stopID The stop ID.
+     * @return Future of the list of trips for the given stop.
+     */
+    public synchronized CompletableFuture<List<Trip>> getTrips(final String stopID) {
+        Objects.requireNonNull(stopID, "stopID must not be null");
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Batcher is closed"));
+        }
+
+        requests.incrementAndGet();
+        CompletableFuture<List<Trip>> future = batch.get(stopID);
+        if (future == null) {
+            future = new CompletableFuture<>();
+            batch.put(stopID, future);
+            if (batch.size() >= maxStops) {
+                flush();
+            } else if (batch.size() == 1) {
+                // First stop of a new batch, schedule time-triggered flush.
+                long gen = generation;
+                delayedExecutor().execute(() -> windowExpired(gen));
+            }
+        }
+
+        // Return a dependent future, so callers cannot complete the shared one.
+        return future.thenApply(trips -> trips);
+    }
+
+    /**
+     * Send the current batch, if the window of the given batch has expired and it has not been sent yet.
+     *
+     * @param gen Generation of the batch.
+     */
+    private synchronized void windowExpired(long gen) {
+        if (gen == generation) {
+            flush();
+        }
+    }
+
+    /**
+     * Send the current batch, if not empty, and start a new batch.
+     */
+    public synchronized void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        generation++;
+        Map<String, CompletableFuture<List<Trip>>> pending = batch;
+        batch = new LinkedHashMap<>();
+        batches.incrementAndGet();
+
+        CompletableFuture<List<Trip>> response;
+        try {
+            response = client.forStops(pending.keySet().toArray(new String[0])).getTripsAsync();
+        } catch (RuntimeException e) {
+            fail(pending, e);
+            return;
+        }
+
+        response.whenComplete((trips, throwable) -> {
+            if (throwable != null) {
+                fail(pending, throwable);
+            } else {
+                try {
+                    dispatch(trips, pending);
+                } catch (RuntimeException e) {
+                    fail(pending, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Complete all futures of a batch exceptionally, that have not been completed yet.
+     *
+     * @param pending Futures of the batch by stop ID.
+     * @param error   The error.
+     */
+    private static void fail(Map<String, CompletableFuture<List<Trip>>> pending, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        UraClientException e = cause instanceof UraClientException uce
+            ? uce
+            : new UraClientException("Failed to read trips from API", cause);
+        pending.values().forEach(future -> future.completeExceptionally(e));
+    }
+
+    /**
+     * Route trips of a batch response to the futures of their stops.
+     *
+     * @param trips   Trips of the batch response.
+     * @param pending Futures of the batch by stop ID.
+     */
+    private static void dispatch(List<Trip> trips, Map<String, CompletableFuture<List<Trip>>> pending) {
+        Map<String, List<Trip>> byStop = new HashMap<>();
+        for (Trip trip : trips) {
+            if (trip.stop() != null && pending.containsKey(trip.stop().id())) {
+                byStop.computeIfAbsent(trip.stop().id(), id -> new ArrayList<>()).add(trip);
+            }
+        }
+        pending.forEach((stopID, future) -> future.complete(List.copyOf(byStop.getOrDefault(stopID, List.of()))));
+    }
+
+    /**
+     * Get an executor for time-triggered flushes.
+     *
+     * @return The executor.
+     */
+    private Executor delayedExecutor() {
+        if (executor != null) {
+            return CompletableFuture.delayedExecutor(window.toNanos(), TimeUnit.NANOSECONDS, executor);
+        }
+        return CompletableFuture.delayedExecutor(window.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of batch requests sent.
+     *
+     * @return Number of batches.
+     */
+    public long batches() {
+        return batches.get();
+    }
+
+    /**
+     * Get the number of stop requests accepted.
+     *
+     * @return Number of requests.
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    /**
+     * Close the batcher and send the pending batch.
+     * Further requests are rejected.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            flush();
+        }
+    }
+
+    /**
+     * Builder for {@link TripBatcher} objects.
+     */
+    public static class Builder {
+        private final UraClient client;
+        private Duration window;
+        private int maxStops;
+        private Executor executor;
+
+        /**
+         * Initialize the builder with default values, i.e. batches of up to 100 stops and a window of 50
+         * milliseconds.
+         *
+         * @param client Client to issue batch requests.
+         */
+        private Builder(UraClient client) {
+            this.client = client;
+            this.window = Duration.ofMillis(50);
+            this.maxStops = 100;
+            this.executor = null;
+        }
+
+        /**
+         * Specify the window, i.e. the maximum time a request waits for more stops to be added to its batch.
+         *
+         * @param window Window duration.
+         * @return The builder.
+         */
+        public Builder withWindow(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Specify the maximum number of stops per batch.
+         *
+         * @param maxStops Maximum number of distinct stop IDs.
+         * @return The builder.
+         */
+        public Builder withMaxStops(int maxStops) {
+            this.maxStops = maxStops;
+            return this;
+        }
+
+        /**
+         * Specify the executor for time-triggered batches.
+         *
+         * @param executor The executor.
+         * @return The builder.
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Finally build the batcher.
+         *
+         * @return The batcher.
+         */
+        public TripBatcher build() {
+            return new TripBatcher(client, window, maxStops, executor);
+        }
+    }
+}
@@ -22,19 +22,42 @@ import de.stklcode.pubtrans.ura.model.Message;
 import de.stklcode.pubtrans.ura.model.Stop;
 import de.stklcode.pubtrans.ura.model.Trip;
 import de.stklcode.pubtrans.ura.reader.AsyncUraTripReader;
+import de.stklcode.pubtrans.ura.reader.LineDecoder;
+import de.stklcode.pubtrans.ura.reader.LineFramer;
+import de.stklcode.pubtrans.ura.reader.TripFilter;
+import de.stklcode.pubtrans.ura.reader.UraLineDecoder;
+import de.stklcode.pubtrans.ura.reader.UraPublisher;
+import de.stklcode.pubtrans.ura.reader.UraStreamHub;
 import tools.jackson.core.JacksonException;
-import tools.jackson.databind.ObjectMapper;
 
-import java.io.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -42,10 +65,15 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  * Client for URA based public transport API.
  * <p>
  * This client features builder pattern style query functionality to obtain {@link Trip} and {@link Stop} information.
+ * <p>
+ * Unless connection reuse is disabled in the configuration, all requests and stream readers of a client share a
+ * single HTTP client, so {@link #close()} the client once it is no longer needed.
+ * List results of instant queries can be cached by configuring a {@link ResponseCache}.
+ * A {@link RequestLimiter} in the configuration limits the rate and concurrency of all instant requests.
  *
  * @author Stefan Kalscheuer
  */
-public class UraClient implements Serializable {
+public class UraClient implements Serializable, AutoCloseable {
 
     @Serial
     private static final long serialVersionUID = -1183740075816686611L;
@@ -71,26 +99,38 @@ public class UraClient implements Serializable {
     private static final String PAR_MSG_PRIORITY = "MessagePriority";
     private static final String PAR_MSG_TEXT = "MessageText";
 
-    private static final Integer RES_TYPE_STOP = 0;
-    private static final Integer RES_TYPE_PREDICTION = 1;
-    private static final Integer RES_TYPE_FLEX_MESSAGE = 2;
-    private static final Integer RES_TYPE_URA_VERSION = 4;
-
     private static final String[] REQUEST_STOP = {PAR_STOP_NAME, PAR_STOP_ID, PAR_STOP_INDICATOR, PAR_STOP_STATE, PAR_GEOLOCATION};
     private static final String[] REQUEST_TRIP = {PAR_STOP_NAME, PAR_STOP_ID, PAR_STOP_INDICATOR, PAR_STOP_STATE, PAR_GEOLOCATION,
             PAR_VISIT_NUMBER, PAR_LINE_ID, PAR_LINE_NAME, PAR_DIR_ID, PAR_DEST_NAME, PAR_DEST_TEXT, PAR_VEHICLE_ID, PAR_TRIP_ID, PAR_ESTTIME};
     private static final String[] REQUEST_MESSAGE = {PAR_STOP_NAME, PAR_STOP_ID, PAR_STOP_INDICATOR, PAR_STOP_STATE, PAR_GEOLOCATION,
             PAR_MSG_UUID, PAR_MSG_TYPE, PAR_MSG_PRIORITY, PAR_MSG_TEXT};
 
+    /**
+     * Value lists a query can be split by. Towards is not included, as a trip can match multiple values.
+     */
+    private static final List<ShardParameter> SHARD_PARAMETERS = List.of(
+        new ShardParameter(q -> q.stopIDs, Query::forStops),
+        new ShardParameter(q -> q.stopNames, Query::forStopsByName),
+        new ShardParameter(q -> q.lineIDs, Query::forLines),
+        new ShardParameter(q -> q.lineNames, Query::forLinesByName),
+        new ShardParameter(q -> q.destinationNames, Query::forDestinationNames)
+    );
+    private static final String ENCODED_SEPARATOR = URLEncoder.encode(",", UTF_8);
+
     /**
      * The client configuration.
      */
     private final UraClientConfiguration config;
 
     /**
-     * The JSON mapper.
+     * The shared HTTP client, created on first use.
      */
-    private final ObjectMapper mapper;
+    private transient HttpClient httpClient;
+
+    /**
+     * Identical instant requests in flight, created on first use.
+     */
+    private transient RequestCoalescer coalescer;
 
     /**
      * Constructor from {@link UraClientConfiguration}.
@@ -100,7 +140,6 @@ public class UraClient implements Serializable {
      */
     public UraClient(final UraClientConfiguration config) {
         this.config = config;
-        this.mapper = new ObjectMapper();
     }
 
     /**
@@ -266,27 +305,60 @@ public class UraClient implements Serializable {
      * @since 2.0 Throws {@link UraClientException}.
      */
     public List<Trip> getTrips(final Query query, final Integer limit) throws UraClientException {
-        List<Trip> trips = new ArrayList<>();
-        try (InputStream is = requestInstant(REQUEST_TRIP, query);
-             BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
-            String version = null;
-            String line = br.readLine();
-            while (line != null && (limit == null || trips.size() < limit)) {
-                List<Serializable> l = mapper.readValue(line, mapper.getTypeFactory().constructCollectionType(List.class, Serializable.class));
-                /* Check if result exists and has correct response type */
-                if (l != null && !l.isEmpty()) {
-                    if (l.get(0).equals(RES_TYPE_URA_VERSION)) {
-                        version = l.get(1).toString();
-                    } else if (l.get(0).equals(RES_TYPE_PREDICTION)) {
-                        trips.add(Trip.of(l, version));
-                    }
-                }
-                line = br.readLine();
-            }
+        try {
+            return readInstant(REQUEST_TRIP, Trip.class, query, limit, UraLineDecoder::decodeTrip,
+                "Failed to read trips from API");
         } catch (IOException | JacksonException e) {
             throw new UraClientException("Failed to read trips from API", e);
         }
-        return trips;
+    }
+
+    /**
+     * Get a lazily decoded stream of trips for the given query.
+     * <p>
+     * Trips are decoded one by one while the stream is consumed, so the full result is never held in memory.
+     * The returned stream is backed by the open HTTP response and must be closed after use, e.g. using
+     * try-with-resources. Closing the stream before the end aborts the connection.
+     * Errors while reading are thrown as {@link UncheckedIOException} with an {@link UraClientException} as cause.
+     *
+     * @param query The query.
+     * @return Stream of trips.
+     * @throws UraClientException Error with API communication.
+     * @since 3.0
+     */
+    public Stream<Trip> streamTrips(final Query query) throws UraClientException {
+        return streamInstant(REQUEST_TRIP, query, UraLineDecoder::decodeTrip, "Failed to read trips from API");
+    }
+
+    /**
+     * Get list of trips for the given query asynchronously.
+     * <p>
+     * The request is sent without blocking the calling thread. The response is decoded on the executor from the
+     * client configuration, or the common pool if none is configured.
+     * The future completes exceptionally with an {@link UraClientException} on errors.
+     *
+     * @param query The query.
+     * @return Future of the list of trips.
+     * @since 3.0
+     */
+    public CompletableFuture<List<Trip>> getTripsAsync(final Query query) {
+        return requestInstantAsync(REQUEST_TRIP, Trip.class, query, UraLineDecoder::decodeTrip, "Failed to read trips from API");
+    }
+
+    /**
+     * Get a reactive publisher of trips for the given query.
+     * <p>
+     * Each subscription issues a new request to the instant endpoint. The response is read and decoded only as far as
+     * requested by the subscriber, so backpressure is propagated to the HTTP connection.
+     * Errors are signaled as {@link UraClientException}.
+     *
+     * @param query The query.
+     * @return Publisher of trips.
+     * @throws UraClientConfigurationException Invalid API URL.
+     * @since 3.0
+     */
+    public Flow.Publisher<Trip> publishTrips(final Query query) throws UraClientConfigurationException {
+        return publish(config.instantPath(), REQUEST_TRIP, query, UraLineDecoder::decodeTrip, "Failed to read trips from API");
     }
 
     /**
@@ -319,6 +391,7 @@ public class UraClient implements Serializable {
             AsyncUraTripReader reader = new AsyncUraTripReader(
                     URI.create(requestURL(config.baseURL() + config.streamPath(), REQUEST_TRIP, query)),
                     config,
+                    httpClient(),
                     consumers
             );
 
@@ -331,6 +404,44 @@ public class UraClient implements Serializable {
         }
     }
 
+    /**
+     * Get a reactive publisher of trips for the given query using the stream API.
+     * <p>
+     * Each subscription opens a new stream. Lines are read from the open connection only as far as requested by the
+     * subscriber. Cancel the subscription to close the stream.
+     *
+     * @param query The query.
+     * @return Publisher of trips.
+     * @throws UraClientConfigurationException Invalid API URL.
+     * @see #publishTrips(Query)
+     * @since 3.0
+     */
+    public Flow.Publisher<Trip> publishTripsStream(final Query query) throws UraClientConfigurationException {
+        return publish(config.streamPath(), REQUEST_TRIP, query, UraLineDecoder::decodeTrip, "Failed to read trips from API");
+    }
+
+    /**
+     * Get a hub that shares a single stream connection for the given query among multiple local subscribers.
+     * The connection is opened with the first subscription.
+     *
+     * @param query The upstream query, i.e. the union of all trips of interest.
+     * @return Stream hub.
+     * @throws UraClientConfigurationException Invalid API URL.
+     * @see UraStreamHub
+     * @since 3.0
+     */
+    public UraStreamHub getTripsHub(final Query query) throws UraClientConfigurationException {
+        try {
+            return new UraStreamHub(
+                URI.create(requestURL(config.baseURL() + config.streamPath(), REQUEST_TRIP, query)),
+                config,
+                httpClient()
+            );
+        } catch (IllegalArgumentException e) {
+            throw new UraClientConfigurationException("Invalid API URL, check client configuration.", e);
+        }
+    }
+
     /**
      * Get list of stops without filters.
      *
@@ -354,21 +465,51 @@ public class UraClient implements Serializable {
      * @since 2.0 Throws {@link UraClientException}.
      */
     public List<Stop> getStops(final Query query) throws UraClientException {
-        List<Stop> stops = new ArrayList<>();
-        try (InputStream is = requestInstant(REQUEST_STOP, query);
-             BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                List<Serializable> l = mapper.readValue(line, mapper.getTypeFactory().constructCollectionType(List.class, Serializable.class));
-                /* Check if result exists and has correct response type */
-                if (l != null && !l.isEmpty() && l.get(0).equals(RES_TYPE_STOP)) {
-                    stops.add(Stop.of(l));
-                }
-            }
+        try {
+            return readInstant(REQUEST_STOP, Stop.class, query, null, UraLineDecoder::decodeStop,
+                "Failed to read stops from API");
         } catch (IOException | JacksonException e) {
             throw new UraClientException("Failed to read stops from API", e);
         }
-        return stops;
+    }
+
+    /**
+     * Get list of stops for the given query asynchronously.
+     *
+     * @param query The query.
+     * @return Future of the list of stops.
+     * @see #getTripsAsync(Query)
+     * @since 3.0
+     */
+    public CompletableFuture<List<Stop>> getStopsAsync(final Query query) {
+        return requestInstantAsync(REQUEST_STOP, Stop.class, query, UraLineDecoder::decodeStop, "Failed to read stops from API");
+    }
+
+    /**
+     * Get a lazily decoded stream of stops for the given query.
+     * The returned stream is backed by the open HTTP response and must be closed after use.
+     *
+     * @param query The query.
+     * @return Stream of stops.
+     * @throws UraClientException Error with API communication.
+     * @see #streamTrips(Query)
+     * @since 3.0
+     */
+    public Stream<Stop> streamStops(final Query query) throws UraClientException {
+        return streamInstant(REQUEST_STOP, query, UraLineDecoder::decodeStop, "Failed to read stops from API");
+    }
+
+    /**
+     * Get a reactive publisher of stops for the given query.
+     *
+     * @param query The query.
+     * @return Publisher of stops.
+     * @throws UraClientConfigurationException Invalid API URL.
+     * @see #publishTrips(Query)
+     * @since 3.0
+     */
+    public Flow.Publisher<Stop> publishStops(final Query query) throws UraClientConfigurationException {
+        return publish(config.instantPath(), REQUEST_STOP, query, UraLineDecoder::decodeStop, "Failed to read stops from API");
     }
 
     /**
@@ -423,39 +564,310 @@ public class UraClient implements Serializable {
      * @since 2.0 Throw {@link UraClientException}.
      */
     public List<Message> getMessages(final Query query, final Integer limit) throws UraClientException {
-        List<Message> messages = new ArrayList<>();
-        try (InputStream is = requestInstant(REQUEST_MESSAGE, query);
-             BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
-            String version = null;
-            String line = br.readLine();
-            while (line != null && (limit == null || messages.size() < limit)) {
-                List<Serializable> l = mapper.readValue(line, mapper.getTypeFactory().constructCollectionType(List.class, Serializable.class));
-                /* Check if result exists and has correct response type */
-                if (l != null && !l.isEmpty()) {
-                    if (l.get(0).equals(RES_TYPE_URA_VERSION)) {
-                        version = l.get(1).toString();
-                    } else if (l.get(0).equals(RES_TYPE_FLEX_MESSAGE)) {
-                        messages.add(Message.of(l, version));
-                    }
-                }
-                line = br.readLine();
-            }
+        try {
+            return readInstant(REQUEST_MESSAGE, Message.class, query, limit, UraLineDecoder::decodeMessage,
+                "Failed to read messages from API");
         } catch (IOException | JacksonException e) {
             throw new UraClientException("Failed to read messages from API", e);
         }
-        return messages;
     }
 
     /**
-     * Issue request to instant endpoint and return input stream.
+     * Get list of messages for the given query asynchronously.
+     *
+     * @param query The query.
+     * @return Future of the list of messages.
+     * @see #getTripsAsync(Query)
+     * @since 3.0
+     */
+    public CompletableFuture<List<Message>> getMessagesAsync(final Query query) {
+        return requestInstantAsync(REQUEST_MESSAGE, Message.class, query, UraLineDecoder::decodeMessage, "Failed to read messages from API");
+    }
+
+    /**
+     * Get a lazily decoded stream of messages for the given query.
+     * The returned stream is backed by the open HTTP response and must be closed after use.
+     *
+     * @param query The query.
+     * @return Stream of messages.
+     * @throws UraClientException Error with API communication.
+     * @see #streamTrips(Query)
+     * @since 3.0
+     */
+    public Stream<Message> streamMessages(final Query query) throws UraClientException {
+        return streamInstant(REQUEST_MESSAGE, query, UraLineDecoder::decodeMessage, "Failed to read messages from API");
+    }
+
+    /**
+     * Get a reactive publisher of messages for the given query.
+     *
+     * @param query The query.
+     * @return Publisher of messages.
+     * @throws UraClientConfigurationException Invalid API URL.
+     * @see #publishTrips(Query)
+     * @since 3.0
+     */
+    public Flow.Publisher<Message> publishMessages(final Query query) throws UraClientConfigurationException {
+        return publish(config.instantPath(), REQUEST_MESSAGE, query, UraLineDecoder::decodeMessage,
+            "Failed to read messages from API");
+    }
+
+    /**
+     * Issue request to instant endpoint and decode the response line by line.
+     * If a response cache is configured, the complete result is served from or added to the cache.
+     * If request coalescing is enabled, the result of an identical request in flight is shared.
+     * If the request URL exceeds the configured maximum length, the query is split and the shards are fetched in
+     * parallel.
+     *
+     * @param returnList   Fields to fetch.
+     * @param type         Result type.
+     * @param query        The query.
+     * @param limit        Maximum number of results (optional).
+     * @param lineDecoder  Decoder function for the expected result type.
+     * @param errorMessage Message for exceptions raised while reading.
+     * @param <T>          Result type.
+     * @return List of results.
+     * @throws IOException on errors
+     * @since 3.0
+     */
+    private <T> List<T> readInstant(final String[] returnList, final Class<T> type, final Query query,
+                                    final Integer limit, final LineDecoder<T> lineDecoder,
+                                    final String errorMessage) throws IOException {
+        List<String> urls = instantURLs(returnList, query);
+        List<T> results;
+        if (urls.size() > 1) {
+            try {
+                results = loadInstantAsync(urls, type, lineDecoder, errorMessage).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("API request interrupted", e);
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        } else if (config.responseCache() == null && !config.requestCoalescing()) {
+            return readInstant(request(urls.get(0)), limit, lineDecoder);
+        } else {
+            results = loadInstant(urls.get(0), type, lineDecoder);
+        }
+        return limit == null || results.size() <= limit ? results : results.subList(0, limit);
+    }
+
+    /**
+     * Load the complete result for a single instant request URL, using the cache and request coalescing.
+     *
+     * @param url         Request URL.
+     * @param type        Result type.
+     * @param lineDecoder Decoder function for the expected result type.
+     * @param <T>         Result type.
+     * @return Immutable list of results.
+     * @throws IOException on errors
+     * @since 3.0
+     */
+    private <T> List<T> loadInstant(final String url, final Class<T> type,
+                                    final LineDecoder<T> lineDecoder) throws IOException {
+        ResponseCache cache = config.responseCache();
+        List<T> results = cache == null ? null : cache.get(url);
+        if (results == null) {
+            RequestCoalescer.Loader<T> loader = () -> {
+                List<T> loaded = List.copyOf(readInstant(request(url), null, lineDecoder));
+                if (cache != null) {
+                    cache.put(url, type, loaded);
+                }
+                return loaded;
+            };
+            results = config.requestCoalescing() ? coalescer().load(url, loader) : loader.load();
+        }
+        return results;
+    }
+
+    /**
+     * Unwrap the original error of a failed asynchronous request.
+     * Errors are wrapped in an {@link UraClientException} by the synchronous caller again.
+     *
+     * @param e The execution exception.
+     * @return The original error.
+     */
+    private static IOException unwrap(final ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof UraClientException && !(cause instanceof UraClientConfigurationException)
+            && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException io) {
+            return io;
+        } else if (cause instanceof RuntimeException re) {
+            throw re;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * Decode an instant response line by line.
+     *
+     * @param in          Response body.
+     * @param limit       Maximum number of results (optional).
+     * @param lineDecoder Decoder function for the expected result type.
+     * @param <T>         Result type.
+     * @return List of results.
+     * @throws IOException on errors
+     * @since 3.0
+     */
+    private static <T> List<T> readInstant(final InputStream in, final Integer limit,
+                                           final LineDecoder<T> lineDecoder) throws IOException {
+        List<T> results = new ArrayList<>();
+        try (ResultReader<T> reader = new ResultReader<>(in, lineDecoder)) {
+            T result;
+            while ((limit == null || results.size() < limit) && (result = reader.next()) != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Issue request to instant endpoint and return a lazily decoded stream of results.
+     * If the query is split into shards, all shards are requested in parallel and read one after another.
+     *
+     * @param returnList   Fields to fetch.
+     * @param query        The query.
+     * @param lineDecoder  Decoder function for the expected result type.
+     * @param errorMessage Message for exceptions raised while reading.
+     * @param <T>          Result type.
+     * @return Stream of results.
+     * @throws UraClientException Error with API communication.
+     * @since 3.0
+     */
+    private <T> Stream<T> streamInstant(final String[] returnList, final Query query,
+                                        final LineDecoder<T> lineDecoder, final String errorMessage) throws UraClientException {
+        ResultReader<T> reader;
+        try {
+            reader = new ResultReader<>(request(instantURLs(returnList, query)), lineDecoder);
+        } catch (IOException e) {
+            throw new UraClientException(errorMessage, e);
+        }
+
+        var spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    T result = reader.next();
+                    if (result == null) {
+                        return false;
+                    }
+                    action.accept(result);
+                    return true;
+                } catch (IOException | JacksonException e) {
+                    throw new UncheckedIOException(new UraClientException(errorMessage, e));
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(new UraClientException("Failed to close API connection", e));
+            }
+        });
+    }
+
+    /**
+     * Build the request URLs for the instant endpoint.
      *
      * @param returnList Fields to fetch.
      * @param query      The query.
-     * @return Response {@link InputStream}.
-     * @throws IOException on errors
+     * @return Request URLs, more than one if the query is split into shards.
+     * @since 3.0
+     */
+    private List<String> instantURLs(final String[] returnList, final Query query) {
+        String endpointURL = config.baseURL() + config.instantPath();
+        List<Query> shards = shard(endpointURL, returnList, query);
+        List<String> urls = new ArrayList<>(shards.size());
+        for (Query shard : shards) {
+            urls.add(requestURL(endpointURL, returnList, shard));
+        }
+        return urls;
+    }
+
+    /**
+     * Split a query into shards, if its request URL exceeds the configured maximum length.
+     * <p>
+     * The longest value list is split into as few parts as possible, so each part fits into the remaining URL length.
+     * Shards that are still too long are split further by other value lists. Values are only combined by logical OR
+     * within a list, so the results of all shards are disjoint and their union equals the result of the query.
+     * A single value that exceeds the limit on its own cannot be split.
+     *
+     * @param endpointURL Endpoint URL.
+     * @param returnList  Fields to fetch.
+     * @param query       The query.
+     * @return Shards of the query, only the query itself if no split is required.
+     * @since 3.0
+     */
+    private List<Query> shard(final String endpointURL, final String[] returnList, final Query query) {
+        int maxLength = config.maxURLLength();
+        int length = maxLength > 0 ? requestURL(endpointURL, returnList, query).length() : 0;
+        if (length <= maxLength) {
+            return List.of(query);
+        }
+
+        // Find the longest value list that can be split.
+        ShardParameter parameter = null;
+        int valuesLength = 0;
+        for (ShardParameter candidate : SHARD_PARAMETERS) {
+            String[] values = candidate.getter().apply(query);
+            if (values != null && values.length > 1 && encodedLength(values) > valuesLength) {
+                parameter = candidate;
+                valuesLength = encodedLength(values);
+            }
+        }
+        if (parameter == null) {
+            return List.of(query);
+        }
+
+        // Pack values greedily into the space left by the rest of the URL.
+        String[] values = parameter.getter().apply(query);
+        int available = maxLength - (length - valuesLength);
+        List<Query> shards = new ArrayList<>();
+        int from = 0;
+        int used = encodedLength(values[0]);
+        for (int i = 1; i < values.length; i++) {
+            int valueLength = encodedLength(values[i]);
+            if (used + ENCODED_SEPARATOR.length() + valueLength > available) {
+                shards.addAll(shard(endpointURL, returnList,
+                    parameter.setter().apply(query.copy(), Arrays.copyOfRange(values, from, i))));
+                from = i;
+                used = valueLength;
+            } else {
+                used += ENCODED_SEPARATOR.length() + valueLength;
+            }
+        }
+        shards.addAll(shard(endpointURL, returnList,
+            parameter.setter().apply(query.copy(), Arrays.copyOfRange(values, from, values.length))));
+        return shards;
+    }
+
+    /**
+     * Get the length of a URL encoded value.
+     *
+     * @param value The value.
+     * @return Length of the encoded value.
      */
-    private InputStream requestInstant(final String[] returnList, final Query query) throws IOException {
-        return request(requestURL(config.baseURL() + config.instantPath(), returnList, query));
+    private static int encodedLength(final String value) {
+        return URLEncoder.encode(value, UTF_8).length();
+    }
+
+    /**
+     * Get the length of a URL encoded, comma separated list of values.
+     *
+     * @param values The values.
+     * @return Length of the encoded list.
+     */
+    private static int encodedLength(final String[] values) {
+        int length = ENCODED_SEPARATOR.length() * (values.length - 1);
+        for (String value : values) {
+            length += encodedLength(value);
+        }
+        return length;
     }
 
     /**
@@ -497,28 +909,429 @@ public class UraClient implements Serializable {
      * @throws IOException Error opening connection or reading data.
      */
     private InputStream request(String url) throws IOException {
+        HttpRequest request = buildRequest(url);
+        RequestLimiter.Permit permit = config.requestLimiter() != null ? config.requestLimiter().acquire() : null;
+        boolean success = false;
         try {
-            var clientBuilder = HttpClient.newBuilder();
-            if (config.connectTimeout() != null) {
-                clientBuilder.connectTimeout(config.connectTimeout());
+            var response = httpClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+            success = !isOverloaded(response.statusCode());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                throw new IOException("API request failed with status " + response.statusCode());
             }
 
-            var reqBuilder = HttpRequest.newBuilder(URI.create(url)).GET();
-            if (config.timeout() != null) {
-                reqBuilder.timeout(config.timeout());
+            // Hold the permit until the body has been read.
+            InputStream body = response.body();
+            if (permit != null) {
+                body = permit.releaseOnClose(body);
+                permit = null;
             }
+            return body;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("API request interrupted", e);
+        } finally {
+            if (permit != null) {
+                permit.release(success);
+            }
+        }
+    }
 
-            var response = clientBuilder.build().send(reqBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
-            if (response.statusCode() != 200) {
-                throw new IOException("API request failed with status " + response.statusCode());
+    /**
+     * Send an asynchronous request, once permitted by the request limiter, if configured.
+     *
+     * @param request     The request.
+     * @param bodyHandler Response body handler.
+     * @param <B>         Response body type.
+     * @return Future of the response.
+     * @since 3.0
+     */
+    private <B> CompletableFuture<HttpResponse<B>> sendAsync(final HttpRequest request,
+                                                            final HttpResponse.BodyHandler<B> bodyHandler) {
+        RequestLimiter limiter = config.requestLimiter();
+        if (limiter == null) {
+            return httpClient().sendAsync(request, bodyHandler);
+        }
+
+        return limiter.acquireAsync().thenCompose(permit -> {
+            CompletableFuture<HttpResponse<B>> response;
+            try {
+                response = httpClient().sendAsync(request, bodyHandler);
+            } catch (RuntimeException e) {
+                permit.cancel();
+                throw e;
             }
-            return response.body();
+            response.whenComplete((r, throwable) ->
+                permit.release(throwable == null && !isOverloaded(r.statusCode()))
+            );
+            return response;
+        });
+    }
+
+    /**
+     * Send an asynchronous request for a response stream, once permitted by the request limiter, if configured.
+     * The permit of a successful response is held until its body has been read or closed.
+     *
+     * @param request The request.
+     * @return Future of the response.
+     * @since 3.0
+     */
+    private CompletableFuture<HttpResponse<InputStream>> sendAsyncStream(final HttpRequest request) {
+        RequestLimiter limiter = config.requestLimiter();
+        if (limiter == null) {
+            return httpClient().sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        }
+
+        return limiter.acquireAsync().thenCompose(permit -> {
+            HttpResponse.BodyHandler<InputStream> bodyHandler = info -> {
+                HttpResponse.BodySubscriber<InputStream> body = HttpResponse.BodySubscribers.ofInputStream();
+                if (info.statusCode() == 200) {
+                    body = HttpResponse.BodySubscribers.mapping(body, permit::releaseOnClose);
+                }
+                return body;
+            };
+
+            CompletableFuture<HttpResponse<InputStream>> response;
+            try {
+                response = httpClient().sendAsync(request, bodyHandler);
+            } catch (RuntimeException e) {
+                permit.cancel();
+                throw e;
+            }
+            response.whenComplete((r, throwable) -> {
+                if (throwable != null) {
+                    permit.release(false);
+                } else if (r.statusCode() != 200) {
+                    permit.release(!isOverloaded(r.statusCode()));
+                }
+            });
+            return response;
+        });
+    }
+
+    /**
+     * Check if a response status indicates that the server is overloaded or throttles requests.
+     *
+     * @param statusCode HTTP status code.
+     * @return {@code true} for server errors and too many requests.
+     */
+    private static boolean isOverloaded(final int statusCode) {
+        return statusCode >= 500 || statusCode == 429;
+    }
+
+    /**
+     * Open given URLs as InputStreams.
+     * Multiple requests are sent in parallel.
+     *
+     * @param urls The URLs.
+     * @return Response {@link InputStream}s in order of the URLs.
+     * @throws IOException Error opening connection or reading data.
+     * @since 3.0
+     */
+    private List<InputStream> request(final List<String> urls) throws IOException {
+        if (urls.size() == 1) {
+            return List.of(request(urls.get(0)));
+        }
+
+        List<CompletableFuture<HttpResponse<InputStream>>> responses = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            responses.add(sendAsyncStream(buildRequest(url)));
+        }
+
+        List<InputStream> bodies = new ArrayList<>(urls.size());
+        try {
+            for (var future : responses) {
+                var response = future.get();
+                bodies.add(response.body());
+                if (response.statusCode() != 200) {
+                    throw new IOException("API request failed with status " + response.statusCode());
+                }
+            }
+            return bodies;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            closeAll(responses);
             throw new IOException("API request interrupted", e);
+        } catch (ExecutionException e) {
+            closeAll(responses);
+            throw unwrap(e);
+        } catch (IOException e) {
+            closeAll(responses);
+            throw e;
+        }
+    }
+
+    /**
+     * Close the bodies of all given responses, once available.
+     *
+     * @param responses The responses.
+     */
+    private static void closeAll(final List<CompletableFuture<HttpResponse<InputStream>>> responses) {
+        for (var future : responses) {
+            future.thenAccept(response -> {
+                try {
+                    response.body().close();
+                } catch (IOException e) {
+                    // Ignore, the request has already failed.
+                }
+            });
+        }
+    }
+
+    /**
+     * Issue asynchronous request to instant endpoint and decode the response.
+     * <p>
+     * The response body is received without blocking a thread and decoded on the configured executor afterwards.
+     *
+     * @param returnList   Fields to fetch.
+     * @param type         Result type.
+     * @param query        The query.
+     * @param lineDecoder  Decoder function for the expected result type.
+     * @param errorMessage Message for exceptions raised while reading.
+     * @param <T>          Result type.
+     * @return Future of the list of results.
+     * @since 3.0
+     */
+    private <T> CompletableFuture<List<T>> requestInstantAsync(final String[] returnList, final Class<T> type,
+                                                               final Query query,
+                                                               final LineDecoder<T> lineDecoder,
+                                                               final String errorMessage) {
+        CompletableFuture<List<T>> decoded = loadInstantAsync(
+            instantURLs(returnList, query), type, lineDecoder, errorMessage
+        );
+
+        // Unwrap completion exceptions and wrap transport errors, so the future always fails with UraClientException.
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        decoded.whenComplete((list, throwable) -> {
+            if (throwable == null) {
+                result.complete(list);
+                return;
+            }
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+            result.completeExceptionally(
+                cause instanceof UraClientException ? cause : new UraClientException(errorMessage, cause)
+            );
+        });
+        return result;
+    }
+
+    /**
+     * Load the results for the given instant request URLs asynchronously and merge them in order.
+     *
+     * @param urls         Request URLs, i.e. the shards of a single query.
+     * @param type         Result type.
+     * @param lineDecoder  Decoder function for the expected result type.
+     * @param errorMessage Message for exceptions raised while reading.
+     * @param <T>          Result type.
+     * @return Future of the merged list of results.
+     * @since 3.0
+     */
+    private <T> CompletableFuture<List<T>> loadInstantAsync(final List<String> urls, final Class<T> type,
+                                                            final LineDecoder<T> lineDecoder,
+                                                            final String errorMessage) {
+        if (urls.size() == 1) {
+            return loadInstantAsync(urls.get(0), type, lineDecoder, errorMessage);
+        }
+
+        List<CompletableFuture<List<T>>> shards = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            shards.add(loadInstantAsync(url, type, lineDecoder, errorMessage));
+        }
+        return CompletableFuture.allOf(shards.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<T> results = new ArrayList<>();
+            shards.forEach(shard -> results.addAll(shard.join()));
+            return results;
+        });
+    }
+
+    /**
+     * Load the results for a single instant request URL asynchronously, using the cache and request coalescing.
+     *
+     * @param url          Request URL.
+     * @param type         Result type.
+     * @param lineDecoder  Decoder function for the expected result type.
+     * @param errorMessage Message for exceptions raised while reading.
+     * @param <T>          Result type.
+     * @return Future of the list of results.
+     * @since 3.0
+     */
+    private <T> CompletableFuture<List<T>> loadInstantAsync(final String url, final Class<T> type,
+                                                            final LineDecoder<T> lineDecoder,
+                                                            final String errorMessage) {
+        ResponseCache cache = config.responseCache();
+        if (cache != null) {
+            List<T> cached = cache.get(url);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        return config.requestCoalescing()
+            ? coalescer().loadAsync(url, () -> fetchInstantAsync(url, type, lineDecoder, errorMessage))
+            : fetchInstantAsync(url, type, lineDecoder, errorMessage);
+    }
+
+    /**
+     * Issue asynchronous request to the given instant URL and decode the response.
+     * If results are shared by a cache or coalesced requests, the decoded list is immutable.
+     *
+     * @param url          Request URL.
+     * @param type         Result type.
+     * @param lineDecoder  Decoder function for the expected result type.
+     * @param errorMessage Message for exceptions raised while reading.
+     * @param <T>          Result type.
+     * @return Future of the list of results.
+     * @since 3.0
+     */
+    private <T> CompletableFuture<List<T>> fetchInstantAsync(final String url, final Class<T> type,
+                                                             final LineDecoder<T> lineDecoder,
+                                                             final String errorMessage) {
+        ResponseCache cache = config.responseCache();
+        HttpRequest request;
+        try {
+            request = buildRequest(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(
+                new UraClientConfigurationException("Invalid API URL, check client configuration.", e)
+            );
+        }
+
+        Function<HttpResponse<byte[]>, List<T>> decode = response -> {
+            try {
+                if (response.statusCode() != 200) {
+                    throw new IOException("API request failed with status " + response.statusCode());
+                }
+                List<T> results = readInstant(new ByteArrayInputStream(response.body()), null, lineDecoder);
+                if (cache != null || config.requestCoalescing()) {
+                    results = List.copyOf(results);
+                }
+                if (cache != null) {
+                    cache.put(url, type, results);
+                }
+                return results;
+            } catch (IOException | JacksonException e) {
+                throw new CompletionException(new UraClientException(errorMessage, e));
+            }
+        };
+
+        var response = sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (config.executor() != null) {
+            return response.thenApplyAsync(decode, config.executor());
+        } else {
+            return response.thenApplyAsync(decode);
         }
     }
 
+    /**
+     * Create a publisher for the given endpoint and query.
+     *
+     * @param endpointPath Endpoint path relative to the base URL.
+     * @param returnList   Fields to fetch.
+     * @param query        The query.
+     * @param lineDecoder  Decoder function for the expected result type.
+     * @param errorMessage Message for exceptions raised while reading.
+     * @param <T>          Result type.
+     * @return The publisher.
+     * @throws UraClientConfigurationException Invalid API URL.
+     * @since 3.0
+     */
+    private <T> Flow.Publisher<T> publish(final String endpointPath, final String[] returnList, final Query query,
+                                          final LineDecoder<T> lineDecoder, final String errorMessage)
+        throws UraClientConfigurationException {
+        try {
+            HttpRequest request = buildRequest(requestURL(config.baseURL() + endpointPath, returnList, query));
+            Flow.Publisher<T> publisher = new UraPublisher<>(httpClient(), request, lineDecoder, errorMessage);
+
+            // A stream connection is held indefinitely, so it would block a permit and distort the latency samples.
+            RequestLimiter limiter = config.requestLimiter();
+            if (limiter != null && !endpointPath.equals(config.streamPath())) {
+                publisher = new LimitedPublisher<>(publisher, limiter, errorMessage);
+            }
+            return publisher;
+        } catch (IllegalArgumentException e) {
+            throw new UraClientConfigurationException("Invalid API URL, check client configuration.", e);
+        }
+    }
+
+    /**
+     * Build GET request for given URL.
+     *
+     * @param url The URL.
+     * @return The request.
+     * @since 3.0
+     */
+    private HttpRequest buildRequest(String url) {
+        var reqBuilder = HttpRequest.newBuilder(URI.create(url)).GET();
+        if (config.timeout() != null) {
+            reqBuilder.timeout(config.timeout());
+        }
+        return reqBuilder.build();
+    }
+
+    /**
+     * Get the HTTP client for the next request.
+     * If connection reuse is enabled, a single instance is shared, otherwise a new client is created for each call.
+     *
+     * @return The HTTP client.
+     * @since 3.0
+     */
+    private synchronized HttpClient httpClient() {
+        if (!config.connectionReuse()) {
+            return newHttpClient();
+        } else if (httpClient == null) {
+            httpClient = newHttpClient();
+        }
+        return httpClient;
+    }
+
+    /**
+     * Get the coalescer for identical instant requests.
+     *
+     * @return The request coalescer.
+     * @since 3.0
+     */
+    private synchronized RequestCoalescer coalescer() {
+        if (coalescer == null) {
+            coalescer = new RequestCoalescer();
+        }
+        return coalescer;
+    }
+
+    /**
+     * Create a new HTTP client from the configuration.
+     *
+     * @return The HTTP client.
+     * @since 3.0
+     */
+    private HttpClient newHttpClient() {
+        var clientBuilder = HttpClient.newBuilder();
+        if (config.connectTimeout() != null) {
+            clientBuilder.connectTimeout(config.connectTimeout());
+        }
+        if (config.httpVersion() != null) {
+            clientBuilder.version(config.httpVersion());
+        }
+        if (config.executor() != null) {
+            clientBuilder.executor(config.executor());
+        }
+        return clientBuilder.build();
+    }
+
+    /**
+     * Release the shared HTTP client.
+     * <p>
+     * Idle connections are released once the client is no longer referenced. Stream readers opened by this client
+     * keep their connection and have to be closed separately. Subsequent requests will create a new HTTP client.
+     *
+     * @since 3.0
+     */
+    @Override
+    public synchronized void close() {
+        httpClient = null;
+    }
+
     /**
      * Add a URL parameter with list of values, if filled.
      *
@@ -533,6 +1346,91 @@ public class UraClient implements Serializable {
         }
     }
 
+    /**
+     * Value list of a query that can be split into shards.
+     *
+     * @param getter Getter for the values.
+     * @param setter Setter for the values on a query copy.
+     */
+    private record ShardParameter(Function<Query, String[]> getter, BiFunction<Query, String[], Query> setter) {
+    }
+
+    /**
+     * Reader for results of instant responses.
+     *
+     * @param <T> Result type.
+     */
+    private static final class ResultReader<T> implements AutoCloseable {
+        private final List<InputStream> inputs;
+        private final UraLineDecoder decoder;
+        private final LineDecoder<T> lineDecoder;
+        private LineFramer lines;
+        private int current;
+
+        /**
+         * Initialize the reader.
+         *
+         * @param in          Response body.
+         * @param lineDecoder Decoder function for the expected result type.
+         */
+        private ResultReader(final InputStream in, final LineDecoder<T> lineDecoder) {
+            this(List.of(in), lineDecoder);
+        }
+
+        /**
+         * Initialize the reader for multiple responses, e.g. of a sharded query, that are read one after another.
+         *
+         * @param inputs      Response bodies.
+         * @param lineDecoder Decoder function for the expected result type.
+         */
+        private ResultReader(final List<InputStream> inputs, final LineDecoder<T> lineDecoder) {
+            this.inputs = inputs;
+            this.decoder = new UraLineDecoder();
+            this.lineDecoder = lineDecoder;
+            this.lines = new LineFramer(inputs.get(0));
+            this.current = 0;
+        }
+
+        /**
+         * Read the next result, skipping lines of other types.
+         *
+         * @return The result or {@code null} at the end of the response.
+         * @throws IOException Error reading or decoding the response.
+         */
+        private T next() throws IOException {
+            while (true) {
+                while (lines.next()) {
+                    T result = lineDecoder.decode(decoder, lines.buffer(), lines.offset(), lines.length());
+                    if (result != null) {
+                        return result;
+                    }
+                }
+
+                // Continue with the next response, if any.
+                if (current + 1 >= inputs.size()) {
+                    return null;
+                }
+                lines.close();
+                lines = new LineFramer(inputs.get(++current));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException error = null;
+            for (int i = current; i < inputs.size(); i++) {
+                try {
+                    inputs.get(i).close();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
     /**
      * Request meta object.
      */
@@ -651,6 +1549,42 @@ public class UraClient implements Serializable {
             return UraClient.this.getStops(this);
         }
 
+        /**
+         * Get stops for set filters asynchronously.
+         *
+         * @return Future of the list of matching stops.
+         * @see UraClient#getStopsAsync(Query)
+         * @since 3.0
+         */
+        public CompletableFuture<List<Stop>> getStopsAsync() {
+            return UraClient.this.getStopsAsync(this);
+        }
+
+        /**
+         * Get a lazily decoded stream of stops for set filters.
+         * The returned stream is backed by the open HTTP response and must be closed after use.
+         *
+         * @return Stream of matching stops.
+         * @throws UraClientException Error with API communication.
+         * @see UraClient#streamStops(Query)
+         * @since 3.0
+         */
+        public Stream<Stop> streamStops() throws UraClientException {
+            return UraClient.this.streamStops(this);
+        }
+
+        /**
+         * Get a reactive publisher of stops for set filters.
+         *
+         * @return Publisher of matching stops.
+         * @throws UraClientConfigurationException Invalid API URL.
+         * @see UraClient#publishStops(Query)
+         * @since 3.0
+         */
+        public Flow.Publisher<Stop> publishStops() throws UraClientConfigurationException {
+            return UraClient.this.publishStops(this);
+        }
+
         /**
          * Get trips for set filters.
          *
@@ -675,6 +1609,117 @@ public class UraClient implements Serializable {
             return UraClient.this.getTrips(this, limit);
         }
 
+        /**
+         * Get trips for set filters asynchronously.
+         *
+         * @return Future of the list of matching trips.
+         * @see UraClient#getTripsAsync(Query)
+         * @since 3.0
+         */
+        public CompletableFuture<List<Trip>> getTripsAsync() {
+            return UraClient.this.getTripsAsync(this);
+        }
+
+        /**
+         * Get a lazily decoded stream of trips for set filters.
+         * The returned stream is backed by the open HTTP response and must be closed after use.
+         *
+         * @return Stream of matching trips.
+         * @throws UraClientException Error with API communication.
+         * @see UraClient#streamTrips(Query)
+         * @since 3.0
+         */
+        public Stream<Trip> streamTrips() throws UraClientException {
+            return UraClient.this.streamTrips(this);
+        }
+
+        /**
+         * Get a reactive publisher of trips for set filters.
+         *
+         * @return Publisher of matching trips.
+         * @throws UraClientConfigurationException Invalid API URL.
+         * @see UraClient#publishTrips(Query)
+         * @since 3.0
+         */
+        public Flow.Publisher<Trip> publishTrips() throws UraClientConfigurationException {
+            return UraClient.this.publishTrips(this);
+        }
+
+        /**
+         * Get a reactive publisher of trips for set filters using the stream API.
+         *
+         * @return Publisher of matching trips.
+         * @throws UraClientConfigurationException Invalid API URL.
+         * @see UraClient#publishTripsStream(Query)
+         * @since 3.0
+         */
+        public Flow.Publisher<Trip> publishTripsStream() throws UraClientConfigurationException {
+            return UraClient.this.publishTripsStream(this);
+        }
+
+        /**
+         * Get a hub that shares a single stream connection for set filters among multiple local subscribers.
+         *
+         * @return Stream hub.
+         * @throws UraClientConfigurationException Invalid API URL.
+         * @see UraClient#getTripsHub(Query)
+         * @since 3.0
+         */
+        public UraStreamHub getTripsHub() throws UraClientConfigurationException {
+            return UraClient.this.getTripsHub(this);
+        }
+
+        /**
+         * Convert set filters to a local trip filter, e.g. to subscribe to a {@link UraStreamHub}.
+         *
+         * @return Trip filter.
+         * @throws IllegalStateException Query contains filters that cannot be evaluated locally, i.e.
+         *                               {@link #towards(String...)} or {@link #forPosition(Double, Double, Integer)}.
+         * @since 3.0
+         */
+        public TripFilter toTripFilter() {
+            if (towards != null || circle != null) {
+                throw new IllegalStateException("Towards and position filters cannot be evaluated locally");
+            }
+
+            return new TripFilter(
+                toSet(stopIDs),
+                toSet(stopNames),
+                toSet(lineIDs),
+                toSet(lineNames),
+                direction,
+                toSet(destinationNames)
+            );
+        }
+
+        /**
+         * Create a copy of this query with the same filters.
+         *
+         * @return The copy.
+         */
+        private Query copy() {
+            Query copy = new Query();
+            copy.stopIDs = stopIDs;
+            copy.stopNames = stopNames;
+            copy.lineIDs = lineIDs;
+            copy.lineNames = lineNames;
+            copy.direction = direction;
+            copy.destinationNames = destinationNames;
+            copy.towards = towards;
+            copy.circle = circle;
+            return copy;
+        }
+
+        /**
+         * Convert filter values to a set.
+         *
+         * @param values Filter values, might be {@code null}.
+         * @return Set of values, {@code null} if no values are given.
+         */
+        private Set<String> toSet(String[] values) {
+            return values == null ? null : new HashSet<>(Arrays.asList(values));
+        }
+
         /**
          * Get trips for set filters.
          *
@@ -723,5 +1768,41 @@ public class UraClient implements Serializable {
         public List<Message> getMessages(final Integer limit) throws UraClientException {
             return UraClient.this.getMessages(this, limit);
         }
+
+        /**
+         * Get messages for set filters asynchronously.
+         *
+         * @return Future of the list of matching messages.
+         * @see UraClient#getMessagesAsync(Query)
+         * @since 3.0
+         */
+        public CompletableFuture<List<Message>> getMessagesAsync() {
+            return UraClient.this.getMessagesAsync(this);
+        }
+
+        /**
+         * Get a lazily decoded stream of messages for set filters.
+         * The returned stream is backed by the open HTTP response and must be closed after use.
+         *
+         * @return Stream of matching messages.
+         * @throws UraClientException Error with API communication.
+         * @see UraClient#streamMessages(Query)
+         * @since 3.0
+         */
+        public Stream<Message> streamMessages() throws UraClientException {
+            return UraClient.this.streamMessages(this);
+        }
+
+        /**
+         * Get a reactive publisher of messages for set filters.
+         *
+         * @return Publisher of matching messages.
+         * @throws UraClientConfigurationException Invalid API URL.
+         * @see UraClient#publishMessages(Query)
+         * @since 3.0
+         */
+        public Flow.Publisher<Message> publishMessages() throws UraClientConfigurationException {
+            return UraClient.this.publishMessages(this);
+        }
     }
 }
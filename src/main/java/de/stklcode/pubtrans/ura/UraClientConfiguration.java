@@ -16,17 +16,32 @@
 
 package de.stklcode.pubtrans.ura;
 
+import de.stklcode.pubtrans.ura.reader.ReconnectPolicy;
+
 import java.io.Serializable;
+import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.Executor;
 
 /**
  * Configuration Object for the {@link UraClient}.
  *
- * @param baseURL        API base URL.
- * @param instantPath    Path to instant API endpoint.
- * @param streamPath     Path to stream API endpoint.
- * @param connectTimeout Optional connection timeout.
- * @param timeout        Optional read timeout.
+ * @param baseURL           API base URL.
+ * @param instantPath       Path to instant API endpoint.
+ * @param streamPath        Path to stream API endpoint.
+ * @param connectTimeout    Optional connection timeout.
+ * @param timeout           Optional read timeout.
+ * @param httpVersion       Optional preferred HTTP protocol version.
+ * @param executor          Optional executor for asynchronous HTTP tasks.
+ *                          Note that the configuration is only serializable, if the executor is.
+ * @param connectionReuse   Share a single HTTP client and its connections across requests.
+ * @param reconnectPolicy   Optional policy to reconnect streams after the connection has been lost.
+ * @param idleTimeout       Optional maximum time without data on a stream before the connection is aborted.
+ * @param parseParallelism  Number of threads to decode stream lines, {@code 0} to decode on the reading thread.
+ * @param responseCache     Optional cache for results of instant queries.
+ * @param requestCoalescing Share a single request among concurrent identical instant queries.
+ * @param maxURLLength      Maximum length of instant request URLs, {@code 0} for no limit.
+ * @param requestLimiter    Optional limiter for the rate and concurrency of instant requests.
  * @author Stefan Kalscheuer
  * @since 2.0
  * @since 3.0 record
@@ -36,12 +51,35 @@ public record UraClientConfiguration(
     String instantPath,
     String streamPath,
     Duration connectTimeout,
-    Duration timeout
+    Duration timeout,
+    HttpClient.Version httpVersion,
+    Executor executor,
+    boolean connectionReuse,
+    ReconnectPolicy reconnectPolicy,
+    Duration idleTimeout,
+    int parseParallelism,
+    ResponseCache responseCache,
+    boolean requestCoalescing,
+    int maxURLLength,
+    RequestLimiter requestLimiter
 ) implements Serializable {
 
     private static final String DEFAULT_INSTANT_PATH = "/interfaces/ura/instant_V1";
     private static final String DEFAULT_STREAM_PATH = "/interfaces/ura/stream_V1";
 
+    /**
+     * Construct configuration with default HTTP client settings.
+     *
+     * @param baseURL        API base URL.
+     * @param instantPath    Path to instant API endpoint.
+     * @param streamPath     Path to stream API endpoint.
+     * @param connectTimeout Optional connection timeout.
+     * @param timeout        Optional read timeout.
+     */
+    public UraClientConfiguration(String baseURL, String instantPath, String streamPath, Duration connectTimeout, Duration timeout) {
+        this(baseURL, instantPath, streamPath, connectTimeout, timeout, null, null, true, null, null, 0, null, false, 0, null);
+    }
+
     /**
      * Get new configuration {@link Builder} for given base URL.
      * This URL is the only option required.
@@ -63,6 +101,16 @@ public record UraClientConfiguration(
         private String streamPath;
         private Duration connectTimeout;
         private Duration timeout;
+        private HttpClient.Version httpVersion;
+        private Executor executor;
+        private boolean connectionReuse;
+        private ReconnectPolicy reconnectPolicy;
+        private Duration idleTimeout;
+        private int parseParallelism;
+        private ResponseCache responseCache;
+        private boolean requestCoalescing;
+        private int maxURLLength;
+        private RequestLimiter requestLimiter;
 
         /**
          * Initialize the builder with mandatory base URL.
@@ -76,6 +124,16 @@ public record UraClientConfiguration(
             this.streamPath = DEFAULT_STREAM_PATH;
             this.connectTimeout = null;
             this.timeout = null;
+            this.httpVersion = null;
+            this.executor = null;
+            this.connectionReuse = true;
+            this.reconnectPolicy = null;
+            this.idleTimeout = null;
+            this.parseParallelism = 0;
+            this.responseCache = null;
+            this.requestCoalescing = false;
+            this.maxURLLength = 0;
+            this.requestLimiter = null;
         }
 
         /**
@@ -122,13 +180,182 @@ public record UraClientConfiguration(
             return this;
         }
 
+        /**
+         * Specify the preferred HTTP protocol version.
+         * If not set, the HTTP client default (HTTP/2 with fallback to HTTP/1.1) is used.
+         *
+         * @param httpVersion HTTP version.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withHttpVersion(HttpClient.Version httpVersion) {
+            this.httpVersion = httpVersion;
+            return this;
+        }
+
+        /**
+         * Specify a custom executor for asynchronous HTTP tasks.
+         * If not set, the HTTP client's default executor is used.
+         *
+         * @param executor The executor.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Enable or disable connection reuse.
+         * If enabled (default), the client shares a single HTTP client across all requests and stream readers, so
+         * connections are kept alive. If disabled, a new HTTP client is created for each request.
+         *
+         * @param connectionReuse Reuse connections.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withConnectionReuse(boolean connectionReuse) {
+            this.connectionReuse = connectionReuse;
+            return this;
+        }
+
+        /**
+         * Specify a policy to reconnect streams after the connection has been lost or closed by the server.
+         * If not set, stream readers terminate with the connection.
+         *
+         * @param reconnectPolicy Reconnect policy.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+            this.reconnectPolicy = reconnectPolicy;
+            return this;
+        }
+
+        /**
+         * Specify the maximum time without data on a stream.
+         * If exceeded, the connection is aborted and reopened according to the reconnect policy.
+         * Unlike the timeout, which only applies to the response headers, this detects stalled connections while
+         * reading the stream.
+         *
+         * @param idleTimeout Idle timeout duration.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * Specify the number of threads to decode stream lines.
+         * If set, lines are only framed on the thread reading the stream and decoded in parallel. Lines are
+         * partitioned by trip ID, so predictions of the same trip are still delivered in order, but consumers may be
+         * invoked concurrently for different trips. This also applies to subscribers of a
+         * {@link de.stklcode.pubtrans.ura.reader.UraStreamHub}. Consumers must be thread-safe then, others can be
+         * wrapped in a {@link de.stklcode.pubtrans.ura.reader.QueuedConsumer}. A
+         * {@link de.stklcode.pubtrans.ura.reader.RingBufferConsumer} supports a single producer only and is rejected.
+         * If not set or {@code 0}, lines are decoded and delivered sequentially on the reading thread.
+         *
+         * @param parseParallelism Number of decoding threads.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withParseParallelism(int parseParallelism) {
+            this.parseParallelism = parseParallelism;
+            return this;
+        }
+
+        /**
+         * Specify a cache for results of instant queries.
+         * If set, list results of identical queries are served from the cache until the time-to-live for their type
+         * has elapsed. Cached lists are immutable and results are read completely, even if a limit is given.
+         * If not set, each query issues a new request.
+         *
+         * @param responseCache The cache.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withResponseCache(ResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        /**
+         * Enable or disable coalescing of concurrent identical instant queries.
+         * If enabled, a list query for the same request URL as a query still in flight does not issue a new request,
+         * but waits for and shares the result of the pending one. Shared results are immutable and read completely,
+         * even if a limit is given.
+         * Disabled by default.
+         *
+         * @param requestCoalescing Coalesce identical requests.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withRequestCoalescing(boolean requestCoalescing) {
+            this.requestCoalescing = requestCoalescing;
+            return this;
+        }
+
+        /**
+         * Specify the maximum length of instant request URLs.
+         * Queries with longer URLs, e.g. for thousands of stop IDs, are split into shards by their stop and line
+         * lists. The shards are requested in parallel and their results are merged into a single list or stream.
+         * Reactive publishers and the stream API always use a single request.
+         * If not set or {@code 0}, queries are never split.
+         *
+         * @param maxURLLength Maximum URL length in characters.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withMaxURLLength(int maxURLLength) {
+            this.maxURLLength = maxURLLength;
+            return this;
+        }
+
+        /**
+         * Specify a limiter for the rate and concurrency of instant requests.
+         * All instant requests of the client, including shards and asynchronous queries, require a permit. Results
+         * served from the response cache or shared by coalesced requests do not. A permit is held until the response
+         * body has been read completely or closed.
+         * Reactive publishers of instant results hold their permit until the response is complete or the subscription
+         * is cancelled. The stream API is not limited, because its connection is held indefinitely and would block a
+         * permit.
+         * If not set, requests are not limited.
+         *
+         * @param requestLimiter The limiter.
+         * @return The builder.
+         * @since 3.0
+         */
+        public Builder withRequestLimiter(RequestLimiter requestLimiter) {
+            this.requestLimiter = requestLimiter;
+            return this;
+        }
+
         /**
          * Finally build the configuration object.
          *
          * @return The configuration.
          */
         public UraClientConfiguration build() {
-            return new UraClientConfiguration(baseURL, instantPath, streamPath, connectTimeout, timeout);
+            return new UraClientConfiguration(
+                baseURL,
+                instantPath,
+                streamPath,
+                connectTimeout,
+                timeout,
+                httpVersion,
+                executor,
+                connectionReuse,
+                reconnectPolicy,
+                idleTimeout,
+                parseParallelism,
+                responseCache,
+                requestCoalescing,
+                maxURLLength,
+                requestLimiter
+            );
         }
     }
 }
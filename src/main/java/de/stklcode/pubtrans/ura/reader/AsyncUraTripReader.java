@@ -19,36 +19,67 @@ package de.stklcode.pubtrans.ura.reader;
 import de.stklcode.pubtrans.ura.UraClientConfiguration;
 import de.stklcode.pubtrans.ura.model.Trip;
 import tools.jackson.core.JacksonException;
-import tools.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
-import java.io.Serializable;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 /**
  * Asynchronous stream reader for URA stream API.
  * <p>
  * This reader provides a handler for asynchronous stream events.
+ * Consumers are invoked sequentially on the thread that reads the stream. Wrap slow consumers in a
+ * {@link QueuedConsumer} to decouple them from the reader and from each other, or in a {@link ConflatingConsumer} to
+ * skip superseded predictions. A {@link BatchingConsumer} passes trips to sinks that process batches. Latency
+ * sensitive consumers can be attached using a lock-free {@link RingBufferConsumer}.
+ * A {@link DeltaConsumer} translates the repeated predictions into change events, a {@link DepartureBoard}
+ * maintains the upcoming departures of each stop.
+ * <p>
+ * If the client configuration contains a {@link ReconnectPolicy}, the reader reopens the stream after the connection
+ * has been lost or closed by the server. Consumers are kept, so they continue to receive trips from the new
+ * connection. Reconnect events can be observed using {@link #addReconnectListener(Consumer)}.
+ * <p>
+ * If an idle timeout is configured, a watchdog aborts the connection if no line has been received within this
+ * period, e.g. because of a half-open TCP connection. The aborted connection is handled like any other connection
+ * error, i.e. it is reopened according to the reconnect policy or the reader fails. Errors that terminate the reader
+ * can be observed using {@link #addErrorListener(Consumer)}.
+ * <p>
+ * A {@link TripFilter} set using {@link #setFilter(TripFilter)} restricts the trips passed to the consumers. Lines
+ * that do not match the filter's stop or line IDs are rejected before they are decoded.
+ * <p>
+ * If a parse parallelism is configured, lines are only framed on the reading thread and decoded on a pool of worker
+ * threads. Lines are partitioned by trip ID, so consumers receive the predictions of each trip in order, but they are
+ * invoked concurrently for different trips and must be thread-safe. Consumers that are not can be wrapped in a
+ * {@link QueuedConsumer}, which never invokes its delegate concurrently. A {@link RingBufferConsumer} supports a single
+ * producer only, so it is rejected unless it is wrapped this way.
  *
  * @author Stefan Kalscheuer
  * @since 1.2.0
  */
 public class AsyncUraTripReader implements AutoCloseable {
-    private static final Integer RES_TYPE_PREDICTION = 1;
-    private static final Integer RES_TYPE_URA_VERSION = 4;
-
     private final List<Consumer<Trip>> consumers;
+    private final List<Consumer<ReconnectEvent>> reconnectListeners;
+    private final List<Consumer<Throwable>> errorListeners;
     private final URI uri;
     private final UraClientConfiguration config;
+    private final HttpClient httpClient;
+    private final ServerClock clock;
     private JsonLineSubscriber subscriber;
+    private ParsePipeline pipeline;
     private CompletableFuture<Void> future;
+    private int attempt;
+    private volatile long lastActivity;
+    private volatile LineFilter lineFilter;
 
     /**
      * Initialize trip reader.
@@ -82,65 +113,318 @@ public class AsyncUraTripReader implements AutoCloseable {
      * @since 2.0 Configuration added.
      */
     public AsyncUraTripReader(URI uri, UraClientConfiguration config, List<Consumer<Trip>> consumers) {
+        this(uri, config, null, consumers);
+    }
+
+    /**
+     * Initialize trip reader with a shared HTTP client.
+     *
+     * @param uri        URL to read trips from.
+     * @param config     Client configuration for additional parameters.
+     * @param httpClient HTTP client to use. If {@code null}, a new client is created for this reader.
+     * @param consumers  Initial list of consumers.
+     * @throws IllegalArgumentException A consumer cannot be invoked concurrently, but a parse parallelism is configured.
+     * @since 3.0
+     */
+    public AsyncUraTripReader(URI uri, UraClientConfiguration config, HttpClient httpClient, List<Consumer<Trip>> consumers) {
         this.uri = uri;
         this.config = config;
-        this.consumers = new ArrayList<>(consumers);
+        consumers.forEach(this::checkConsumer);
+        this.httpClient = httpClient != null ? httpClient : newHttpClient();
+        this.consumers = new CopyOnWriteArrayList<>(consumers);
+        this.reconnectListeners = new CopyOnWriteArrayList<>();
+        this.errorListeners = new CopyOnWriteArrayList<>();
+        this.lastActivity = System.nanoTime();
+        this.clock = new ServerClock();
     }
 
     /**
      * Open the reader, i.e. initiate connection to the API and start reading the response stream.
      */
-    public void open() {
+    public synchronized void open() {
         // Throw exception, if future is already present.
         if (future != null) {
             throw new IllegalStateException("Reader already opened");
         }
 
-        this.subscriber = new JsonLineSubscriber();
+        this.future = new CompletableFuture<>();
+        this.attempt = 0;
+        if (config != null && config.parseParallelism() > 0) {
+            this.pipeline = new ParsePipeline(config.parseParallelism());
+        }
+        connect(future);
+    }
 
-        HttpClient.Builder clientBuilder = HttpClient.newBuilder();
-        if (config != null && config.connectTimeout() != null) {
-            clientBuilder.connectTimeout(config.connectTimeout());
+    /**
+     * Open a new connection to the API, unless the reader has been closed in the meantime.
+     *
+     * @param state State future of the reader session the connection belongs to.
+     */
+    private synchronized void connect(CompletableFuture<Void> state) {
+        if (future != state || state.isDone()) {
+            return;
         }
 
+        JsonLineSubscriber lineSubscriber = new JsonLineSubscriber();
+        this.subscriber = lineSubscriber;
+        this.lastActivity = System.nanoTime();
+
         HttpRequest.Builder reqBuilder = HttpRequest.newBuilder(uri).GET();
         if (config != null && config.timeout() != null) {
             reqBuilder.timeout(config.timeout());
         }
 
-        clientBuilder.build().sendAsync(
+        // Error responses count as failed attempt, so their body is discarded.
+        httpClient.sendAsync(
                 reqBuilder.build(),
-                HttpResponse.BodyHandlers.fromLineSubscriber(subscriber)
-        ).exceptionally(throwable -> {
-            subscriber.onError(throwable);
-            return null;
+                info -> info.statusCode() == 200
+                    ? HttpResponse.BodySubscribers.fromSubscriber(lineSubscriber)
+                    : HttpResponse.BodySubscribers.replacing(null)
+        ).whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                lineSubscriber.onError(throwable);
+            } else if (response.statusCode() != 200) {
+                lineSubscriber.onError(new IOException("API request failed with status " + response.statusCode()));
+            }
         });
-        this.future = subscriber.getState();
+
+        if (config != null && config.idleTimeout() != null) {
+            watch(lineSubscriber, config.idleTimeout().toNanos());
+        }
+    }
+
+    /**
+     * Schedule an idle check for the given connection.
+     *
+     * @param lineSubscriber The subscriber of the connection.
+     * @param delay          Delay until the next check in nanoseconds.
+     */
+    private void watch(JsonLineSubscriber lineSubscriber, long delay) {
+        delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+            if (lineSubscriber.terminated.get()) {
+                return;
+            }
+
+            long timeout = config.idleTimeout().toNanos();
+            long idle = System.nanoTime() - lastActivity;
+            if (idle >= timeout) {
+                lineSubscriber.abort(new HttpTimeoutException("No data received for " + Duration.ofNanos(idle)));
+            } else {
+                watch(lineSubscriber, timeout - idle);
+            }
+        });
+    }
+
+    /**
+     * Handle the first line successfully decoded on a connection.
+     *
+     * @param lineSubscriber The subscriber of the connection.
+     */
+    private synchronized void connected(JsonLineSubscriber lineSubscriber) {
+        if (lineSubscriber != subscriber || attempt == 0) {
+            return;
+        }
+
+        ReconnectEvent event = new ReconnectEvent(ReconnectEvent.Type.RECONNECTED, attempt, null, null);
+        attempt = 0;
+        notifyReconnectListeners(event);
+    }
+
+    /**
+     * Handle a terminated connection, i.e. schedule a reconnect or finally terminate the reader.
+     *
+     * @param lineSubscriber The subscriber of the terminated connection.
+     * @param cause          Error that caused the termination, {@code null} if the stream has been closed.
+     */
+    private synchronized void disconnected(JsonLineSubscriber lineSubscriber, Throwable cause) {
+        CompletableFuture<Void> state = future;
+        if (lineSubscriber != subscriber || state == null || state.isDone()) {
+            return;
+        }
+
+        ReconnectPolicy policy = config != null ? config.reconnectPolicy() : null;
+        if (policy == null) {
+            complete(state, cause);
+        } else if (attempt >= policy.maxAttempts()) {
+            complete(state, cause);
+            notifyReconnectListeners(new ReconnectEvent(ReconnectEvent.Type.FAILED, attempt, null, cause));
+        } else {
+            attempt++;
+            Duration delay = policy.delay(attempt);
+            delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS).execute(() -> connect(state));
+            notifyReconnectListeners(new ReconnectEvent(ReconnectEvent.Type.DISCONNECTED, attempt, delay, cause));
+        }
+    }
+
+    /**
+     * Complete the reader state and notify error listeners, if the reader terminates with an error.
+     *
+     * @param state State future.
+     * @param cause Error, {@code null} for regular completion.
+     */
+    private void complete(CompletableFuture<Void> state, Throwable cause) {
+        closePipeline();
+        if (cause == null) {
+            state.complete(null);
+        } else {
+            state.completeExceptionally(cause);
+            errorListeners.forEach(l -> l.accept(cause));
+        }
+    }
+
+    /**
+     * Close the parse pipeline, if any.
+     * Lines already dispatched are still delivered.
+     */
+    private void closePipeline() {
+        if (pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+    }
+
+    /**
+     * Get an executor for delayed tasks, backed by the configured executor, if any.
+     *
+     * @param delay Delay.
+     * @param unit  Time unit of the delay.
+     * @return The executor.
+     */
+    private Executor delayedExecutor(long delay, TimeUnit unit) {
+        if (config != null && config.executor() != null) {
+            return CompletableFuture.delayedExecutor(delay, unit, config.executor());
+        }
+        return CompletableFuture.delayedExecutor(delay, unit);
+    }
+
+    /**
+     * Pass an event to all reconnect listeners.
+     *
+     * @param event The event.
+     */
+    private void notifyReconnectListeners(ReconnectEvent event) {
+        reconnectListeners.forEach(l -> l.accept(event));
+    }
+
+    /**
+     * Create a new HTTP client from the configuration, if no shared client has been provided.
+     *
+     * @return The HTTP client.
+     */
+    private HttpClient newHttpClient() {
+        HttpClient.Builder clientBuilder = HttpClient.newBuilder();
+        if (config != null) {
+            if (config.connectTimeout() != null) {
+                clientBuilder.connectTimeout(config.connectTimeout());
+            }
+            if (config.httpVersion() != null) {
+                clientBuilder.version(config.httpVersion());
+            }
+            if (config.executor() != null) {
+                clientBuilder.executor(config.executor());
+            }
+        }
+        return clientBuilder.build();
     }
 
     /**
      * Register an additional consumer.
      *
      * @param consumer New consumer.
+     * @throws IllegalArgumentException Consumer cannot be invoked concurrently, but a parse parallelism is configured.
      */
     public void addConsumer(Consumer<Trip> consumer) {
+        checkConsumer(consumer);
         consumers.add(consumer);
     }
 
+    /**
+     * Check that a consumer supports concurrent invocation, if lines are decoded in parallel.
+     *
+     * @param consumer The consumer.
+     * @throws IllegalArgumentException Consumer supports a single producer only, but a parse parallelism is configured.
+     * @since 3.0
+     */
+    void checkConsumer(Consumer<?> consumer) {
+        if (config != null && config.parseParallelism() > 0 && consumer instanceof RingBufferConsumer) {
+            throw new IllegalArgumentException(
+                "RingBufferConsumer supports a single producer only, wrap it in a QueuedConsumer for parallel parsing"
+            );
+        }
+    }
+
+    /**
+     * Set a filter for trips passed to the consumers.
+     * Lines are checked before decoding, so a selective filter also reduces the parsing effort for large streams.
+     *
+     * @param filter Trip filter, {@code null} to pass all trips.
+     * @since 3.0
+     */
+    public void setFilter(TripFilter filter) {
+        this.lineFilter = filter != null ? new LineFilter(filter) : null;
+    }
+
+    /**
+     * Register a listener for reconnect events.
+     * Events are only emitted, if a {@link ReconnectPolicy} is configured.
+     *
+     * @param listener New listener.
+     * @since 3.0
+     */
+    public void addReconnectListener(Consumer<ReconnectEvent> listener) {
+        reconnectListeners.add(listener);
+    }
+
+    /**
+     * Register a listener for errors that terminate the reader.
+     * If a {@link ReconnectPolicy} is configured, this is only the case after the maximum number of attempts.
+     *
+     * @param listener New listener.
+     * @since 3.0
+     */
+    public void addErrorListener(Consumer<Throwable> listener) {
+        errorListeners.add(listener);
+    }
+
+    /**
+     * Get the time since the last line has been received, or since the current connection has been opened, if no
+     * line has been received yet.
+     *
+     * @return Idle time.
+     * @since 3.0
+     */
+    public Duration idleTime() {
+        return Duration.ofNanos(System.nanoTime() - lastActivity);
+    }
+
+    /**
+     * Get a clock following the server time of the stream.
+     * The clock is synchronized with the timestamp of the version line of each connection and can be used to expire
+     * predictions, e.g. in a {@link TimingWheel}, independent of the local clock.
+     *
+     * @return The server clock.
+     * @since 3.0
+     */
+    public ServerClock clock() {
+        return clock;
+    }
+
     /**
      * Close the reader.
      * This is done by signaling cancel to the asynchronous task. If the task is not completed
      * within 1 second however it is canceled hard.
      */
     @Override
-    public void close() {
+    public synchronized void close() {
         // Nothing to do if future is not yet started.
         if (future == null) {
             return;
         }
 
         // Signal cancelling to gracefully stop future.
+        future.complete(null);
         subscriber.cancel();
+        closePipeline();
         try {
             future.get(1, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
@@ -157,67 +441,156 @@ public class AsyncUraTripReader implements AutoCloseable {
 
     /**
      * JSON line subscriber for asynchronous response handling.
+     * A new subscriber is used for each connection, so the version line is read again after reconnecting.
+     * <p>
+     * The subscriber receives the raw body chunks and frames lines itself, so lines are decoded from UTF-8 bytes
+     * without creating a {@link String} per line.
      *
      * @since 2.0
      */
-    private class JsonLineSubscriber implements Flow.Subscriber<String> {
-        private final ObjectMapper mapper = new ObjectMapper();
-        private final CompletableFuture<Void> state = new CompletableFuture<>();
+    private class JsonLineSubscriber implements Flow.Subscriber<List<ByteBuffer>>, ParsePipeline.Target {
+        private final UraLineDecoder decoder = new UraLineDecoder();
+        private final LineFramer framer = new LineFramer();
+        private final ParsePipeline lanes = pipeline;
+        private final AtomicBoolean terminated = new AtomicBoolean(false);
+        private volatile boolean discarded;
+        private volatile boolean established;
         private Flow.Subscription subscription;
-        private String version = null;
 
         @Override
         public void onSubscribe(Flow.Subscription subscription) {
             this.subscription = subscription;
-            this.subscription.request(1);
+            if (terminated.get()) {
+                subscription.cancel();
+            } else {
+                this.subscription.request(1);
+            }
         }
 
         @Override
-        public void onNext(String item) {
+        public void onNext(List<ByteBuffer> item) {
+            lastActivity = System.nanoTime();
+            item.forEach(framer::feed);
+            if (process()) {
+                // Request next chunk.
+                this.subscription.request(1);
+            }
+        }
+
+        /**
+         * Decode all complete lines buffered by the framer and pass the trips to the consumers.
+         *
+         * @return {@code true} on success, {@code false} if the connection has been aborted.
+         */
+        private boolean process() {
             try {
-                List<Serializable> l = mapper.readValue(item, mapper.getTypeFactory().constructCollectionType(List.class, Serializable.class));
-                // Check if result exists and has correct response type.
-                if (l != null && !l.isEmpty()) {
-                    if (l.get(0).equals(RES_TYPE_URA_VERSION)) {
-                        version = l.get(1).toString();
-                    } else if (l.get(0).equals(RES_TYPE_PREDICTION)) {
-                        // Parse Trip and pass to each consumer.
-                        Trip trip = Trip.of(l, version);
-                        consumers.forEach(c -> c.accept(trip));
+                LineFilter filter = lineFilter;
+                while (framer.next()) {
+                    byte[] buf = framer.buffer();
+                    int off = framer.offset();
+                    int len = framer.length();
+
+                    // Decode version lines on the reading thread to synchronize the server clock.
+                    if (LineFilter.lineType(buf, off, off + len) == UraLineDecoder.RES_TYPE_URA_VERSION) {
+                        decoder.decodeTrip(buf, off, len);
+                        if (decoder.timestamp() != 0L) {
+                            clock.sync(decoder.timestamp());
+                        }
+                        established();
+                        continue;
                     }
-                }
 
-                // Request next item.
-                this.subscription.request(1);
+                    // Skip lines that do not match the filter without decoding them.
+                    if (filter != null && !filter.accept(buf, off, len)) {
+                        continue;
+                    }
+
+                    if (lanes != null) {
+                        lanes.dispatch(buf, off, len, this);
+                    } else {
+                        // Parse Trip and pass to each consumer, if the line is a prediction.
+                        Trip trip = decoder.decodeTrip(buf, off, len);
+                        established();
+                        if (trip != null) {
+                            decoded(trip);
+                        }
+                    }
+                }
+                return true;
             } catch (IOException | JacksonException e) {
-                onError(e);
+                abort(e);
+                return false;
             }
         }
 
+        @Override
+        public boolean active() {
+            return !discarded;
+        }
+
+        @Override
+        public void decoded(Trip trip) {
+            established();
+            LineFilter filter = lineFilter;
+            if (filter == null || filter.filter().test(trip)) {
+                consumers.forEach(c -> c.accept(trip));
+            }
+        }
+
+        /**
+         * Mark the connection as established once the first line has been decoded successfully.
+         * Error responses and undecodable data thus do not reset the reconnect attempts.
+         */
+        private void established() {
+            if (!established) {
+                established = true;
+                connected(this);
+            }
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            abort(cause);
+        }
+
         @Override
         public void onError(Throwable throwable) {
-            state.completeExceptionally(throwable);
+            if (terminated.compareAndSet(false, true)) {
+                disconnected(this, throwable);
+            }
         }
 
         @Override
         public void onComplete() {
-            state.complete(null);
+            // Process a trailing line without line break.
+            framer.finish();
+            if (!terminated.get() && process() && terminated.compareAndSet(false, true)) {
+                disconnected(this, null);
+            }
         }
 
         /**
-         * Retrieve the state future.
+         * Abort the connection with an error.
+         * Lines of this connection pending in the parse pipeline are discarded.
          *
-         * @return State future.
+         * @param cause The error.
          */
-        public CompletableFuture<Void> getState() {
-            return state;
+        private void abort(Throwable cause) {
+            discarded = true;
+            if (terminated.compareAndSet(false, true)) {
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                disconnected(this, cause);
+            }
         }
 
         /**
          * Cancel the current subscription.
          */
         public void cancel() {
-            state.complete(null);
+            discarded = true;
+            terminated.set(true);
             if (subscription != null) {
                 subscription.cancel();
             }
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Consumer that accumulates items and passes them to a delegate in batches.
+ * <p>
+ * A batch is flushed as soon as it reaches the maximum size, or when the maximum linger time has elapsed since the
+ * first item of the batch has been added. Remaining items are flushed on {@link #close()}.
+ * <p>
+ * Size-triggered flushes run on the thread that adds the item, i.e. the stream reader. Time-triggered flushes run
+ * on the configured executor or the common pool. The delegate is never invoked concurrently and batches are passed in
+ * order. It is invoked without holding the lock for adding items, so a slow delegate during a time-triggered flush
+ * does not block the stream reader, unless the next batch is full before the delegate returns.
+ * <p>
+ * The batch list is reused. It is read-only and only valid for the duration of the call, so the delegate must copy it
+ * if the items are needed afterwards.
+ *
+ * @param <T> Item type.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class BatchingConsumer<T> implements Consumer<T>, AutoCloseable {
+    private final Consumer<List<T>> delegate;
+    private final int maxSize;
+    private final Duration maxLinger;
+    private final Executor executor;
+    private final Queue<List<T>> pending = new ArrayDeque<>();
+    private final Object deliveryLock = new Object();
+    private List<T> batch;
+    private List<T> spare;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long generation;
+    private boolean closed;
+
+    /**
+     * Initialize the consumer.
+     * Use {@link #forConsumer(Consumer)} to get a builder.
+     *
+     * @param delegate  Delegate batch consumer.
+     * @param maxSize   Maximum batch size.
+     * @param maxLinger Maximum time to wait for more items.
+     * @param executor  Executor for time-triggered flushes, {@code null} to use the common pool.
+     */
+    private BatchingConsumer(Consumer<List<T>> delegate, int maxSize, Duration maxLinger, Executor executor) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be positive");
+        }
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.maxSize = maxSize;
+        this.maxLinger = Objects.requireNonNull(maxLinger, "maxLinger must not be null");
+        this.executor = executor;
+        this.batch = new ArrayList<>(maxSize);
+    }
+
+    /**
+     * Get new {@link Builder} for the given delegate batch consumer.
+     *
+     * @param delegate Delegate batch consumer.
+     * @param <T>      Item type.
+     * @return Builder instance.
+     */
+    public static <T> Builder<T> forConsumer(Consumer<List<T>> delegate) {
+        return new Builder<>(delegate);
+    }
+
+    /**
+     * Add an item to the current batch.
+     * Items passed after {@link #close()} are dropped.
+     *
+     * @param item The item.
+     */
+    @Override
+    public void accept(T item) {
+        synchronized (this) {
+            if (closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            batch.add(item);
+            if (batch.size() < maxSize) {
+                if (batch.size() == 1) {
+                    // First item of a new batch, schedule time-triggered flush.
+                    long gen = generation;
+                    delayedExecutor().execute(() -> lingerExpired(gen));
+                }
+                return;
+            }
+            swap();
+        }
+        deliver();
+    }
+
+    /**
+     * Flush the current batch, if the linger time of the given batch has expired and it has not been flushed yet.
+     *
+     * @param gen Generation of the batch.
+     */
+    private void lingerExpired(long gen) {
+        synchronized (this) {
+            if (gen != generation) {
+                return;
+            }
+            swap();
+        }
+        deliver();
+    }
+
+    /**
+     * Pass the current batch to the delegate, if not empty, and start a new batch.
+     * Returns after all batches flushed before have been passed to the delegate.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (!batch.isEmpty()) {
+                swap();
+            }
+        }
+        deliver();
+    }
+
+    /**
+     * Queue the current batch for delivery and start a new one. Must be called while holding the lock.
+     */
+    private void swap() {
+        generation++;
+        pending.add(batch);
+        batch = spare != null ? spare : new ArrayList<>(maxSize);
+        spare = null;
+    }
+
+    /**
+     * Pass all queued batches to the delegate in order.
+     * Must be called without holding the lock, so items can be added while the delegate is running.
+     */
+    private void deliver() {
+        synchronized (deliveryLock) {
+            while (true) {
+                List<T> next;
+                synchronized (this) {
+                    next = pending.poll();
+                }
+                if (next == null) {
+                    return;
+                }
+
+                try {
+                    delegate.accept(Collections.unmodifiableList(next));
+                    batches.incrementAndGet();
+                } finally {
+                    // Reuse the list for the next batch.
+                    next.clear();
+                    synchronized (this) {
+                        spare = next;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get an executor for time-triggered flushes.
+     *
+     * @return The executor.
+     */
+    private Executor delayedExecutor() {
+        if (executor != null) {
+            return CompletableFuture.delayedExecutor(maxLinger.toNanos(), TimeUnit.NANOSECONDS, executor);
+        }
+        return CompletableFuture.delayedExecutor(maxLinger.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of batches passed to the delegate.
+     *
+     * @return Number of batches.
+     */
+    public long batches() {
+        return batches.get();
+    }
+
+    /**
+     * Get the number of items discarded after closing.
+     *
+     * @return Number of dropped items.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Close the consumer and flush remaining items.
+     * Further items are dropped.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flush();
+    }
+
+    /**
+     * Builder for {@link BatchingConsumer} objects.
+     *
+     * @param <T> Item type.
+     */
+    public static class Builder<T> {
+        private final Consumer<List<T>> delegate;
+        private int maxSize;
+        private Duration maxLinger;
+        private Executor executor;
+
+        /**
+         * Initialize the builder with default values, i.e. batches of up to 100 items and a maximum linger time
+         * of 1 second.
+         *
+         * @param delegate Delegate batch consumer.
+         */
+        private Builder(Consumer<List<T>> delegate) {
+            this.delegate = delegate;
+            this.maxSize = 100;
+            this.maxLinger = Duration.ofSeconds(1);
+            this.executor = null;
+        }
+
+        /**
+         * Specify the maximum batch size.
+         *
+         * @param maxSize Maximum number of items per batch.
+         * @return The builder.
+         */
+        public Builder<T> withMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Specify the maximum linger time, i.e. the maximum time an item waits for the batch to be flushed.
+         *
+         * @param maxLinger Maximum linger time.
+         * @return The builder.
+         */
+        public Builder<T> withMaxLinger(Duration maxLinger) {
+            this.maxLinger = maxLinger;
+            return this;
+        }
+
+        /**
+         * Specify the executor for time-triggered flushes.
+         *
+         * @param executor The executor.
+         * @return The builder.
+         */
+        public Builder<T> withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Finally build the consumer.
+         *
+         * @return The consumer.
+         */
+        public BatchingConsumer<T> build() {
+            return new BatchingConsumer<>(delegate, maxSize, maxLinger, executor);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Trip;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Consumer that conflates pending items by key before passing them to a delegate consumer.
+ * <p>
+ * Like the {@link QueuedConsumer}, items are passed to the delegate asynchronously. If a new item arrives while an
+ * item with the same key is still pending, the pending item is replaced, so a lagging delegate only receives the
+ * latest state per key. Pending items are delivered in the order their key first became pending.
+ * <p>
+ * Use {@link #forTrips(Consumer)} to conflate predictions by trip and visit, i.e. keep only the newest prediction
+ * of each trip at each stop.
+ *
+ * @param <T> Item type.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class ConflatingConsumer<T> implements Consumer<T>, AutoCloseable {
+    private final Consumer<T> delegate;
+    private final Function<? super T, ?> keyFunction;
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private LinkedHashMap<Object, T> pending = new LinkedHashMap<>();
+    private LinkedHashMap<Object, T> spare = new LinkedHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * Initialize the consumer.
+     * Use {@link #forConsumer(Consumer, Function)} or {@link #forTrips(Consumer)} to get a builder.
+     *
+     * @param delegate    Delegate consumer.
+     * @param keyFunction Function to extract the conflation key.
+     * @param executor    Executor to run the delegate, {@code null} to use a dedicated thread.
+     */
+    private ConflatingConsumer(Consumer<T> delegate, Function<? super T, ?> keyFunction, Executor executor) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.keyFunction = Objects.requireNonNull(keyFunction, "keyFunction must not be null");
+        if (executor != null) {
+            this.executor = executor;
+            this.ownExecutor = null;
+        } else {
+            this.ownExecutor = QueuedConsumer.newDaemonExecutor("ura-conflating-consumer");
+            this.executor = ownExecutor;
+        }
+    }
+
+    /**
+     * Get new {@link Builder} for the given delegate consumer and key function.
+     *
+     * @param delegate    Delegate consumer.
+     * @param keyFunction Function to extract the conflation key. Keys must implement {@code equals()} and
+     *                    {@code hashCode()}.
+     * @param <T>         Item type.
+     * @return Builder instance.
+     */
+    public static <T> Builder<T> forConsumer(Consumer<T> delegate, Function<? super T, ?> keyFunction) {
+        return new Builder<>(delegate, keyFunction);
+    }
+
+    /**
+     * Get new {@link Builder} for the given trip consumer, conflating by trip ID and visit ID.
+     *
+     * @param delegate Delegate consumer.
+     * @return Builder instance.
+     */
+    public static Builder<Trip> forTrips(Consumer<Trip> delegate) {
+        return new Builder<>(delegate, TripKey::of);
+    }
+
+    /**
+     * Add an item, replacing a pending item with the same key.
+     * Items passed after {@link #close()} are dropped.
+     *
+     * @param item The item.
+     */
+    @Override
+    public void accept(T item) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        Object key = keyFunction.apply(item);
+        synchronized (this) {
+            if (pending.put(key, item) != null) {
+                conflated.incrementAndGet();
+            }
+        }
+
+        if (wip.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Executor has been shut down concurrently, e.g. by close(), so pending items are never delivered.
+                discard();
+            }
+        }
+    }
+
+    /**
+     * Pass all pending items to the delegate.
+     * The pending map is swapped with a spare one, so new items can be added while the delegate is running.
+     */
+    private void drain() {
+        int missed = 1;
+        do {
+            while (true) {
+                LinkedHashMap<Object, T> batch;
+                synchronized (this) {
+                    batch = pending;
+                    pending = spare;
+                }
+
+                if (batch.isEmpty()) {
+                    spare = batch;
+                    break;
+                }
+
+                for (T item : batch.values()) {
+                    try {
+                        delegate.accept(item);
+                        delivered.incrementAndGet();
+                    } catch (Throwable e) {
+                        // Keep draining, otherwise the consumer would stall for good.
+                        failed.incrementAndGet();
+                    }
+                }
+                batch.clear();
+                spare = batch;
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Drop all pending items without passing them to the delegate.
+     */
+    private void discard() {
+        int missed = 1;
+        do {
+            synchronized (this) {
+                dropped.addAndGet(pending.size());
+                pending.clear();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Get the current lag, i.e. the number of distinct keys waiting for the delegate.
+     *
+     * @return Number of pending items.
+     */
+    public synchronized int lag() {
+        return pending.size();
+    }
+
+    /**
+     * Get the number of items passed to the delegate.
+     *
+     * @return Number of delivered items.
+     */
+    public long delivered() {
+        return delivered.get();
+    }
+
+    /**
+     * Get the number of items replaced by a newer item with the same key before delivery.
+     *
+     * @return Number of conflated items.
+     */
+    public long conflated() {
+        return conflated.get();
+    }
+
+    /**
+     * Get the number of items discarded after closing or because the executor rejected them.
+     *
+     * @return Number of dropped items.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Get the number of items for which the delegate has thrown an exception or error.
+     *
+     * @return Number of failed items.
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Close the consumer.
+     * Further items are dropped. Items already pending are still passed to the delegate.
+     * A dedicated thread is terminated afterwards, an executor provided by the user is not shut down.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Builder for {@link ConflatingConsumer} objects.
+     *
+     * @param <T> Item type.
+     */
+    public static class Builder<T> {
+        private final Consumer<T> delegate;
+        private final Function<? super T, ?> keyFunction;
+        private Executor executor;
+
+        /**
+         * Initialize the builder with a dedicated thread.
+         *
+         * @param delegate    Delegate consumer.
+         * @param keyFunction Function to extract the conflation key.
+         */
+        private Builder(Consumer<T> delegate, Function<? super T, ?> keyFunction) {
+            this.delegate = delegate;
+            this.keyFunction = keyFunction;
+            this.executor = null;
+        }
+
+        /**
+         * Specify the executor to run the delegate on.
+         *
+         * @param executor The executor.
+         * @return The builder.
+         */
+        public Builder<T> withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Finally build the consumer.
+         *
+         * @return The consumer.
+         */
+        public ConflatingConsumer<T> build() {
+            return new ConflatingConsumer<>(delegate, keyFunction, executor);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Trip;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Consumer that translates the prediction stream into change events.
+ * <p>
+ * The stream repeats predictions, even if nothing has changed. This consumer keeps the last known state per trip and
+ * visit and only emits a {@link TripEvent} to the delegate, if a prediction is new or its estimated time, vehicle or
+ * destination text has changed. Changes of the estimated time up to a configurable threshold are suppressed.
+ * <p>
+ * Predictions are removed with an {@link TripEvent.Type#EXPIRED} event once their estimated time has passed by the
+ * configured expiry period. Expiry is tracked in a {@link TimingWheel} that is advanced while trips are received, and
+ * can be advanced explicitly using {@link #expire()}, e.g. if the stream is idle. Predictions carry server
+ * timestamps, so the consumer should use the {@link AsyncUraTripReader#clock() server clock} of the reader. The system
+ * clock is only a fallback and expires predictions early or late if the local time deviates from the server.
+ * <p>
+ * The delegate is invoked on the calling thread. Predictions of different trips may be passed concurrently, but
+ * predictions of the same trip must be passed sequentially, as guaranteed by the {@link AsyncUraTripReader}. Expiry
+ * may run on any of these threads and is synchronized with updates of the respective prediction.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class DeltaConsumer implements Consumer<Trip> {
+    private final Consumer<TripEvent> delegate;
+    private final long etaThreshold;
+    private final long expiry;
+    private final Clock clock;
+    private final Map<TripKey, Entry> states = new ConcurrentHashMap<>();
+    private final TimingWheel<Entry> wheel;
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * Initialize the consumer.
+     * Use {@link #forEvents(Consumer)} to get a builder.
+     *
+     * @param delegate     Delegate event consumer.
+     * @param etaThreshold Maximum change of the estimated time that is suppressed.
+     * @param expiry       Period after the estimated time until a prediction expires.
+     * @param clock        Clock to check for expired predictions.
+     */
+    private DeltaConsumer(Consumer<TripEvent> delegate, Duration etaThreshold, Duration expiry, Clock clock) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.etaThreshold = etaThreshold.toMillis();
+        this.expiry = expiry.toMillis();
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        if (this.etaThreshold < 0 || this.expiry < 0) {
+            throw new IllegalArgumentException("etaThreshold and expiry must not be negative");
+        }
+
+        this.wheel = TimingWheel.<Entry>builder().withClock(clock).build();
+        this.wheel.addListener(this::expired);
+    }
+
+    /**
+     * Get new {@link Builder} for the given event consumer.
+     *
+     * @param delegate Delegate event consumer.
+     * @return Builder instance.
+     */
+    public static Builder forEvents(Consumer<TripEvent> delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * Process a prediction and emit events for changes.
+     *
+     * @param trip The prediction.
+     */
+    @Override
+    public void accept(Trip trip) {
+        wheel.advance();
+
+        TripKey key = TripKey.of(trip);
+        Entry entry = states.get(key);
+        if (entry != null) {
+            synchronized (entry) {
+                // The entry may have expired concurrently, the prediction is new in that case.
+                if (!entry.removed) {
+                    update(entry, trip);
+                    return;
+                }
+            }
+        }
+
+        if (isExpired(trip, clock.millis())) {
+            // Outdated prediction, e.g. repeated by the server after it has already expired.
+            suppressed.incrementAndGet();
+            return;
+        }
+        entry = new Entry(key, trip);
+        synchronized (entry) {
+            entry.timeout = wheel.schedule(entry, trip.estimatedTime() + expiry);
+            states.put(key, entry);
+            delegate.accept(new TripEvent(TripEvent.Type.ADDED, trip, null));
+        }
+    }
+
+    /**
+     * Update a known prediction and emit events for changes.
+     * The caller must hold the lock of the entry.
+     *
+     * @param entry The known state.
+     * @param trip  The new prediction.
+     */
+    private void update(Entry entry, Trip trip) {
+        Trip previous = entry.trip;
+        boolean etaChanged = Math.abs(trip.estimatedTime() - entry.reportedTime) > etaThreshold;
+        boolean vehicleChanged = !Objects.equals(trip.vehicleID(), previous.vehicleID());
+        boolean destinationChanged = !Objects.equals(trip.destinationText(), previous.destinationText());
+        entry.trip = trip;
+        if (etaChanged) {
+            entry.reportedTime = trip.estimatedTime();
+        }
+        if (trip.estimatedTime() != previous.estimatedTime()) {
+            entry.timeout.cancel();
+            entry.timeout = wheel.schedule(entry, trip.estimatedTime() + expiry);
+        }
+
+        if (!etaChanged && !vehicleChanged && !destinationChanged) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        if (etaChanged) {
+            delegate.accept(new TripEvent(TripEvent.Type.ETA_CHANGED, trip, previous));
+        }
+        if (vehicleChanged) {
+            delegate.accept(new TripEvent(TripEvent.Type.VEHICLE_CHANGED, trip, previous));
+        }
+        if (destinationChanged) {
+            delegate.accept(new TripEvent(TripEvent.Type.DESTINATION_CHANGED, trip, previous));
+        }
+    }
+
+    /**
+     * Remove all expired predictions and emit {@link TripEvent.Type#EXPIRED} events.
+     */
+    public void expire() {
+        wheel.advance();
+    }
+
+    /**
+     * Remove an expired prediction and emit the {@link TripEvent.Type#EXPIRED} event.
+     *
+     * @param entry The expired entry.
+     */
+    private void expired(Entry entry) {
+        synchronized (entry) {
+            // Skip entries that have been refreshed with a later estimated time in the meantime.
+            Trip trip = entry.trip;
+            if (!isExpired(trip, clock.millis())) {
+                // The clock may have stepped back, e.g. on server time sync, so the entry has to expire later.
+                if (!entry.removed && !entry.timeout.isScheduled()) {
+                    entry.timeout = wheel.schedule(entry, trip.estimatedTime() + expiry);
+                }
+            } else if (states.remove(entry.key, entry)) {
+                entry.removed = true;
+                delegate.accept(new TripEvent(TripEvent.Type.EXPIRED, trip, null));
+            }
+        }
+    }
+
+    /**
+     * Check if a prediction has expired.
+     *
+     * @param trip The prediction.
+     * @param now  Current time in milliseconds.
+     * @return {@code true}, if the expiry period after the estimated time has passed.
+     */
+    private boolean isExpired(Trip trip, long now) {
+        return trip.estimatedTime() + expiry <= now;
+    }
+
+    /**
+     * Get the number of known predictions.
+     *
+     * @return Number of predictions.
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Get the number of received predictions that did not result in an event.
+     *
+     * @return Number of suppressed predictions.
+     */
+    public long suppressed() {
+        return suppressed.get();
+    }
+
+    /**
+     * Known state of a prediction.
+     * The reported time is the estimated time of the last {@link TripEvent.Type#ADDED} or
+     * {@link TripEvent.Type#ETA_CHANGED} event, so small changes below the threshold cannot add up unnoticed.
+     * Entries are modified by the thread passing predictions of the respective trip and by expiry, both holding the
+     * lock of the entry.
+     */
+    private static final class Entry {
+        private final TripKey key;
+        private Trip trip;
+        private long reportedTime;
+        private TimingWheel.Timeout<Entry> timeout;
+        private boolean removed;
+
+        /**
+         * Initialize the entry for a new prediction.
+         *
+         * @param key  Trip key.
+         * @param trip The prediction.
+         */
+        private Entry(TripKey key, Trip trip) {
+            this.key = key;
+            this.trip = trip;
+            this.reportedTime = trip.estimatedTime();
+        }
+    }
+
+    /**
+     * Builder for {@link DeltaConsumer} objects.
+     */
+    public static class Builder {
+        private final Consumer<TripEvent> delegate;
+        private Duration etaThreshold;
+        private Duration expiry;
+        private Clock clock;
+
+        /**
+         * Initialize the builder with default values, i.e. report every change of the estimated time and expire
+         * predictions 1 minute after their estimated time, according to the system clock.
+         * Use {@link #withClock(Clock)} to follow the server time instead.
+         *
+         * @param delegate Delegate event consumer.
+         */
+        private Builder(Consumer<TripEvent> delegate) {
+            this.delegate = delegate;
+            this.etaThreshold = Duration.ZERO;
+            this.expiry = Duration.ofMinutes(1);
+            this.clock = Clock.systemUTC();
+        }
+
+        /**
+         * Specify the threshold for changes of the estimated time.
+         * Only changes by more than this threshold are reported.
+         *
+         * @param etaThreshold ETA change threshold.
+         * @return The builder.
+         */
+        public Builder withEtaThreshold(Duration etaThreshold) {
+            this.etaThreshold = etaThreshold;
+            return this;
+        }
+
+        /**
+         * Specify the period after the estimated time until a prediction expires.
+         *
+         * @param expiry Expiry period.
+         * @return The builder.
+         */
+        public Builder withExpiry(Duration expiry) {
+            this.expiry = expiry;
+            return this;
+        }
+
+        /**
+         * Specify the clock to check for expired predictions.
+         * This should be the {@link AsyncUraTripReader#clock() server clock} of the reader feeding the consumer.
+         *
+         * @param clock The clock.
+         * @return The builder.
+         */
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Finally build the consumer.
+         *
+         * @return The consumer.
+         */
+        public DeltaConsumer build() {
+            return new DeltaConsumer(delegate, etaThreshold, expiry, clock);
+        }
+    }
+}
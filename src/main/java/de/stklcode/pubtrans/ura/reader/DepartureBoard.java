@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Trip;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * Live departure board for all stops of a stream, kept up to date by an {@link AsyncUraTripReader}.
+ * <p>
+ * The board is a trip consumer that maintains an ordered set of upcoming predictions by estimated time for each stop.
+ * A new prediction for a known trip and visit replaces the previous one. Predictions are evicted once their
+ * estimated time has passed by the configured grace period. Predictions carry server timestamps, so the board
+ * should use the {@link AsyncUraTripReader#clock() server clock} of the reader. The system clock is only a fallback
+ * and evicts predictions early or late if the local time deviates from the server.
+ * <p>
+ * Queries do not block the reader and vice versa. Results are weakly consistent, i.e. a query running concurrently to
+ * an update may or may not reflect it.
+ * <pre>{@code
+ * DepartureBoard board = DepartureBoard.builder().withClock(reader.clock()).build();
+ * reader.addConsumer(board);
+ * List<Trip> next = board.nextDepartures("100308", 5);
+ * }</pre>
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class DepartureBoard implements Consumer<Trip> {
+    private static final Comparator<Trip> ORDER = Comparator.comparingLong(Trip::estimatedTime)
+        .thenComparing(Trip::id, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparingInt(Trip::visitID);
+
+    private final long gracePeriod;
+    private final Clock clock;
+    private final Map<String, NavigableSet<Trip>> stops = new ConcurrentHashMap<>();
+    private final Map<TripKey, Trip> current = new ConcurrentHashMap<>();
+
+    /**
+     * Initialize the board.
+     * Use {@link #builder()} to get a builder.
+     *
+     * @param gracePeriod Period after the estimated time until a prediction is evicted.
+     * @param clock       Clock to determine departed predictions.
+     */
+    private DepartureBoard(Duration gracePeriod, Clock clock) {
+        this.gracePeriod = gracePeriod.toMillis();
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        if (this.gracePeriod < 0) {
+            throw new IllegalArgumentException("gracePeriod must not be negative");
+        }
+    }
+
+    /**
+     * Get new {@link Builder} for a departure board.
+     *
+     * @return Builder instance.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Add or replace a prediction.
+     * Predictions of the same trip and visit must be passed sequentially, as guaranteed by the
+     * {@link AsyncUraTripReader}. Predictions without stop ID are ignored.
+     *
+     * @param trip The prediction.
+     */
+    @Override
+    public void accept(Trip trip) {
+        if (trip.stop() == null || trip.stop().id() == null) {
+            return;
+        }
+
+        long limit = clock.millis() - gracePeriod;
+        NavigableSet<Trip> departures = stops.computeIfAbsent(
+            trip.stop().id(),
+            k -> new ConcurrentSkipListSet<>(ORDER)
+        );
+
+        TripKey key = TripKey.of(trip);
+        if (trip.estimatedTime() < limit) {
+            // Already departed, only remove the previous prediction.
+            Trip previous = current.remove(key);
+            if (previous != null) {
+                remove(previous);
+            }
+        } else {
+            Trip previous = current.put(key, trip);
+            if (previous != null && ORDER.compare(previous, trip) == 0) {
+                // Same position, replace the entry.
+                departures.remove(previous);
+                departures.add(trip);
+            } else {
+                // Add the new entry first, so the trip does not disappear for concurrent queries.
+                departures.add(trip);
+                if (previous != null) {
+                    remove(previous);
+                }
+            }
+        }
+
+        evict(departures, limit);
+    }
+
+    /**
+     * Get the next departures at a stop, ordered by estimated time.
+     * Predictions within the grace period are included.
+     *
+     * @param stopId Stop ID.
+     * @param n      Maximum number of departures.
+     * @return List of up to {@code n} departures.
+     */
+    public List<Trip> nextDepartures(String stopId, int n) {
+        NavigableSet<Trip> departures = stops.get(stopId);
+        if (departures == null || n <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<Trip> result = new ArrayList<>(Math.min(n, 16));
+        Iterator<Trip> it = departures.tailSet(probe(clock.millis() - gracePeriod), true).iterator();
+        while (result.size() < n && it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Evict departed predictions of all stops.
+     * Departed predictions are evicted from a stop while receiving new predictions for it, so this is only required
+     * to release memory of stops without updates.
+     */
+    public void evict() {
+        long limit = clock.millis() - gracePeriod;
+        stops.values().forEach(departures -> evict(departures, limit));
+    }
+
+    /**
+     * Evict departed predictions of a stop.
+     *
+     * @param departures Departures of the stop.
+     * @param limit      Minimum estimated time to keep.
+     */
+    private void evict(NavigableSet<Trip> departures, long limit) {
+        for (Iterator<Trip> it = departures.iterator(); it.hasNext(); ) {
+            Trip trip = it.next();
+            if (trip.estimatedTime() >= limit) {
+                break;
+            } else if (departures.remove(trip)) {
+                current.remove(TripKey.of(trip), trip);
+            }
+        }
+    }
+
+    /**
+     * Remove a prediction from its stop.
+     *
+     * @param trip The prediction.
+     */
+    private void remove(Trip trip) {
+        NavigableSet<Trip> departures = stops.get(trip.stop().id());
+        if (departures != null) {
+            departures.remove(trip);
+        }
+    }
+
+    /**
+     * Create a probe that is ordered before all predictions with the given time or later.
+     *
+     * @param time Estimated time.
+     * @return The probe.
+     */
+    private static Trip probe(long time) {
+        return new Trip(null, null, Integer.MIN_VALUE, null, null, 0, null, null, time, null);
+    }
+
+    /**
+     * Get the number of predictions on the board.
+     *
+     * @return Number of predictions.
+     */
+    public int size() {
+        return current.size();
+    }
+
+    /**
+     * Builder for {@link DepartureBoard} objects.
+     */
+    public static class Builder {
+        private Duration gracePeriod;
+        private Clock clock;
+
+        /**
+         * Initialize the builder with default values, i.e. a grace period of 1 minute and the system clock.
+         * Use {@link #withClock(Clock)} to follow the server time instead.
+         */
+        private Builder() {
+            this.gracePeriod = Duration.ofMinutes(1);
+            this.clock = Clock.systemUTC();
+        }
+
+        /**
+         * Specify the period after the estimated time until a prediction is considered departed.
+         *
+         * @param gracePeriod Grace period.
+         * @return The builder.
+         */
+        public Builder withGracePeriod(Duration gracePeriod) {
+            this.gracePeriod = gracePeriod;
+            return this;
+        }
+
+        /**
+         * Specify the clock to determine departed predictions.
+         * This should be the {@link AsyncUraTripReader#clock() server clock} of the reader feeding the board.
+         *
+         * @param clock The clock.
+         * @return The builder.
+         */
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Finally build the departure board.
+         *
+         * @return The departure board.
+         */
+        public DepartureBoard build() {
+            return new DepartureBoard(gracePeriod, clock);
+        }
+    }
+}
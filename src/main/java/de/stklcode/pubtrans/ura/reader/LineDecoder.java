@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.io.IOException;
+
+/**
+ * Decoder function for a single response line, typically a method reference like
+ * {@code UraLineDecoder::decodeTrip}.
+ *
+ * @param <T> Result type.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+@FunctionalInterface
+public interface LineDecoder<T> {
+    /**
+     * Decode a single line.
+     *
+     * @param decoder Decoder for the current response.
+     * @param buf     Buffer containing the line.
+     * @param off     Offset of the line within the buffer.
+     * @param len     Length of the line.
+     * @return The result or {@code null}, if the line does not match the expected type.
+     * @throws IOException Thrown on invalid line format.
+     */
+    T decode(UraLineDecoder decoder, byte[] buf, int off, int len) throws IOException;
+}
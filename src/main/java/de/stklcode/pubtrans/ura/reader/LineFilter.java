@@ -0,0 +1,363 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import static de.stklcode.pubtrans.ura.reader.UraLineDecoder.F_LINE_ID;
+import static de.stklcode.pubtrans.ura.reader.UraLineDecoder.F_STOP_ID;
+import static de.stklcode.pubtrans.ura.reader.UraLineDecoder.RES_TYPE_PREDICTION;
+import static de.stklcode.pubtrans.ura.reader.UraLineDecoder.RES_TYPE_URA_VERSION;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Pre-filter for raw prediction lines, evaluated before the line is decoded.
+ * <p>
+ * The filter only scans the row type and the stop ID and line ID fields at their fixed positions and looks them up in
+ * hash tables of the raw UTF-8 encoded IDs of a {@link TripFilter}, so non-matching lines are rejected without
+ * allocating any objects. Version lines always pass.
+ * <p>
+ * The pre-filter is conservative: lines that cannot be checked cheaply, e.g. IDs with escape sequences or malformed
+ * lines, are accepted and left to the decoder. So decoded trips must still be checked with {@link #filter()}.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+final class LineFilter {
+    private final TripFilter filter;
+    private final KeyTable stopIDs;
+    private final KeyTable lineIDs;
+    private final int lastField;
+
+    /**
+     * Initialize the pre-filter for the given trip filter.
+     *
+     * @param filter The trip filter.
+     */
+    LineFilter(TripFilter filter) {
+        this.filter = filter;
+        this.stopIDs = filter.stopIDs().isEmpty() ? null : new KeyTable(filter.stopIDs());
+        this.lineIDs = filter.lineIDs().isEmpty() ? null : new KeyTable(filter.lineIDs());
+        if (lineIDs != null) {
+            this.lastField = F_LINE_ID;
+        } else if (stopIDs != null) {
+            this.lastField = F_STOP_ID;
+        } else {
+            this.lastField = 0;
+        }
+    }
+
+    /**
+     * Get the trip filter to check decoded trips.
+     *
+     * @return The filter.
+     */
+    TripFilter filter() {
+        return filter;
+    }
+
+    /**
+     * Check if a raw line might match the filter.
+     *
+     * @param buf Buffer containing the line.
+     * @param off Offset of the line.
+     * @param len Length of the line.
+     * @return {@code false} if the line does certainly not match.
+     */
+    boolean accept(final byte[] buf, final int off, final int len) {
+        final int end = off + len;
+        int i = firstField(buf, off, end);
+        if (i < 0) {
+            // Empty or invalid lines are left to the decoder.
+            return true;
+        }
+
+        int type = rowType(buf, i, end);
+        if (type < 0 || type == RES_TYPE_URA_VERSION) {
+            return true;
+        } else if (type != RES_TYPE_PREDICTION) {
+            return false;
+        }
+
+        for (int field = 1; field <= lastField; field++) {
+            // Advance to the next field.
+            int to = valueEnd(buf, i, end);
+            i = to < 0 ? -1 : nextField(buf, to, end);
+            if (i < 0) {
+                return true;
+            }
+
+            KeyTable keys = keys(field);
+            if (keys != null) {
+                to = valueEnd(buf, i, end);
+                if (to < 0) {
+                    return true;
+                } else if (buf[i] != '"') {
+                    if (!keys.contains(buf, i, to)) {
+                        return false;
+                    }
+                } else if (!isEscaped(buf, i + 1, to - 1) && !keys.contains(buf, i + 1, to - 1)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Locate the first field of a raw line, i.e. the row type.
+     *
+     * @param buf Buffer containing the line.
+     * @param off Offset of the line.
+     * @param end End of the line (exclusive).
+     * @return Index of the first field or {@code -1}, if the line is empty or not an array.
+     */
+    static int firstField(final byte[] buf, final int off, final int end) {
+        int i = skipWhitespace(buf, off, end);
+        if (i >= end || buf[i] != '[') {
+            return -1;
+        }
+        return skipWhitespace(buf, i + 1, end);
+    }
+
+    /**
+     * Parse the row type of a raw line.
+     *
+     * @param buf Buffer containing the line.
+     * @param i   Index of the first field.
+     * @param end End of the line (exclusive).
+     * @return The row type or {@code -1}, if the field is no unsigned integer.
+     */
+    static int rowType(final byte[] buf, int i, final int end) {
+        int start = i;
+        int type = 0;
+        while (i < end && buf[i] >= '0' && buf[i] <= '9' && i - start < 9) {
+            type = type * 10 + buf[i] - '0';
+            i++;
+        }
+        return i == start ? -1 : type;
+    }
+
+    /**
+     * Parse the row type of a raw line.
+     *
+     * @param buf Buffer containing the line.
+     * @param off Offset of the line.
+     * @param end End of the line (exclusive).
+     * @return The row type or {@code -1}, if the line is invalid.
+     */
+    static int lineType(final byte[] buf, final int off, final int end) {
+        int i = firstField(buf, off, end);
+        return i < 0 ? -1 : rowType(buf, i, end);
+    }
+
+    /**
+     * Locate a field of a raw line.
+     *
+     * @param buf   Buffer containing the line.
+     * @param off   Offset of the line.
+     * @param end   End of the line (exclusive).
+     * @param field Field index.
+     * @return Index of the field's value or {@code -1}, if the line is invalid or too short.
+     */
+    static int field(final byte[] buf, final int off, final int end, final int field) {
+        int i = firstField(buf, off, end);
+        for (int f = 0; f < field && i >= 0; f++) {
+            int to = valueEnd(buf, i, end);
+            i = to < 0 ? -1 : nextField(buf, to, end);
+        }
+        return i;
+    }
+
+    /**
+     * Find the end of a value, i.e. a quoted string including the closing quote or an unquoted literal.
+     * Nested arrays or objects are not supported, as they do not occur in URA responses.
+     *
+     * @param buf Buffer containing the line.
+     * @param i   Index of the value.
+     * @param end End of the line (exclusive).
+     * @return Index after the value or {@code -1}, if a string is not terminated.
+     */
+    static int valueEnd(final byte[] buf, int i, final int end) {
+        if (i < end && buf[i] == '"') {
+            i++;
+            while (i < end && buf[i] != '"') {
+                if (buf[i] == '\\') {
+                    i++;
+                }
+                i++;
+            }
+            return i < end ? i + 1 : -1;
+        }
+
+        while (i < end && buf[i] != ',' && buf[i] != ']' && !isWhitespace(buf[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Advance from the end of a value to the next field.
+     *
+     * @param buf Buffer containing the line.
+     * @param i   Index after the previous value.
+     * @param end End of the line (exclusive).
+     * @return Index of the next field's value or {@code -1}, if there is no further field.
+     */
+    private static int nextField(final byte[] buf, int i, final int end) {
+        i = skipWhitespace(buf, i, end);
+        if (i >= end || buf[i] != ',') {
+            return -1;
+        }
+        return skipWhitespace(buf, i + 1, end);
+    }
+
+    /**
+     * Check if a string value contains escape sequences.
+     *
+     * @param buf  Buffer.
+     * @param from Start index (inclusive).
+     * @param to   End index (exclusive).
+     * @return {@code true}, if a backslash is found.
+     */
+    private static boolean isEscaped(final byte[] buf, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the key table for the given field.
+     *
+     * @param field Field index.
+     * @return Key table or {@code null}, if the field is not filtered.
+     */
+    private KeyTable keys(final int field) {
+        if (field == F_STOP_ID) {
+            return stopIDs;
+        } else if (field == F_LINE_ID) {
+            return lineIDs;
+        }
+        return null;
+    }
+
+    /**
+     * Skip JSON whitespace.
+     *
+     * @param buf Buffer.
+     * @param i   Start index.
+     * @param end End index (exclusive).
+     * @return Index of the first non-whitespace character or {@code end}.
+     */
+    static int skipWhitespace(final byte[] buf, int i, final int end) {
+        while (i < end && isWhitespace(buf[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Check for JSON whitespace.
+     *
+     * @param c Character.
+     * @return {@code true} for space, tab, carriage return and line feed.
+     */
+    private static boolean isWhitespace(final int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    /**
+     * Open addressing hash table of UTF-8 encoded keys, supporting lookups of buffer slices without allocation.
+     */
+    private static final class KeyTable {
+        private final byte[][] keys;
+        private final int mask;
+
+        /**
+         * Initialize the table with given keys.
+         *
+         * @param values The keys.
+         */
+        private KeyTable(final Set<String> values) {
+            int capacity = 2;
+            while (capacity < values.size() * 2) {
+                capacity <<= 1;
+            }
+            this.keys = new byte[capacity][];
+            this.mask = capacity - 1;
+
+            for (String value : values) {
+                byte[] key = value.getBytes(UTF_8);
+                int h = hash(key, 0, key.length) & mask;
+                while (keys[h] != null) {
+                    h = (h + 1) & mask;
+                }
+                keys[h] = key;
+            }
+        }
+
+        /**
+         * Check if the table contains the given buffer slice.
+         *
+         * @param buf  Buffer.
+         * @param from Start index (inclusive).
+         * @param to   End index (exclusive).
+         * @return {@code true} if the slice is contained.
+         */
+        private boolean contains(final byte[] buf, final int from, final int to) {
+            int h = hash(buf, from, to) & mask;
+            while (keys[h] != null) {
+                if (Arrays.equals(keys[h], 0, keys[h].length, buf, from, to)) {
+                    return true;
+                }
+                h = (h + 1) & mask;
+            }
+            return false;
+        }
+
+        /**
+         * FNV-1a hash of a buffer slice.
+         *
+         * @param buf  Buffer.
+         * @param from Start index (inclusive).
+         * @param to   End index (exclusive).
+         * @return The hash.
+         */
+        private static int hash(final byte[] buf, final int from, final int to) {
+            int h = 0x811c9dc5;
+            for (int i = from; i < to; i++) {
+                h = (h ^ (buf[i] & 0xFF)) * 0x01000193;
+            }
+            return mix(h);
+        }
+
+        /**
+         * Spread the hash bits, so the lower bits used for indexing depend on all input bytes.
+         *
+         * @param h The hash.
+         * @return The mixed hash.
+         */
+        private static int mix(final int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Line framing on raw byte streams.
+ * <p>
+ * The framer reads the underlying stream into a reusable buffer and exposes each line as slice of that buffer,
+ * so lines can be passed to the {@link UraLineDecoder} without decoding them to {@link String}s first.
+ * Lines are terminated by {@code \n}, an optional trailing {@code \r} is stripped. As both are ASCII characters,
+ * framing is safe for UTF-8 encoded content.
+ * <p>
+ * The framer either pulls data from an {@link InputStream} or, if created without a stream, is fed with chunks using
+ * {@link #feed(ByteBuffer)}. In the latter case {@link #next()} only returns complete lines until {@link #finish()}
+ * has been called.
+ * <p>
+ * A slice is only valid until the next call to {@link #next()} or {@link #feed(ByteBuffer)}.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class LineFramer implements AutoCloseable {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private byte[] buf;
+    private int start;
+    private int scan;
+    private int end;
+    private int lineStart;
+    private int lineLength;
+    private boolean eof;
+
+    /**
+     * Initialize line framer for chunks fed using {@link #feed(ByteBuffer)}.
+     */
+    public LineFramer() {
+        this(null, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Initialize line framer with default buffer size.
+     *
+     * @param in Input stream to read from.
+     */
+    public LineFramer(final InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Initialize line framer.
+     *
+     * @param in         Input stream to read from (might be {@code null} for chunks fed explicitly).
+     * @param bufferSize Initial buffer size. The buffer grows if a single line exceeds this size.
+     */
+    public LineFramer(final InputStream in, final int bufferSize) {
+        this.in = in;
+        this.buf = new byte[Math.max(bufferSize, 16)];
+        this.start = 0;
+        this.scan = 0;
+        this.end = 0;
+        this.eof = false;
+    }
+
+    /**
+     * Advance to the next line.
+     *
+     * @return {@code true}, if a line is available, {@code false} at the end of the stream or if no complete line
+     * has been fed yet.
+     * @throws IOException Error reading from the underlying stream.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            // Look for the next line break in the buffered data.
+            for (; scan < end; scan++) {
+                if (buf[scan] == '\n') {
+                    setLine(start, scan);
+                    start = ++scan;
+                    return true;
+                }
+            }
+
+            if (eof) {
+                // Return trailing line without line break, if any.
+                if (start < end) {
+                    setLine(start, end);
+                    start = end;
+                    return true;
+                }
+                return false;
+            } else if (in == null) {
+                // Wait for more chunks.
+                return false;
+            }
+
+            int off = reserve();
+            int n = in.read(buf, off, buf.length - off);
+            if (n < 0) {
+                eof = true;
+            } else {
+                end += n;
+            }
+        }
+    }
+
+    /**
+     * Append a chunk of data.
+     * The buffer's content is copied, so it can be reused or released afterwards.
+     *
+     * @param chunk Data chunk.
+     */
+    public void feed(final ByteBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            int off = reserve();
+            int n = Math.min(chunk.remaining(), buf.length - off);
+            chunk.get(buf, off, n);
+            end += n;
+        }
+    }
+
+    /**
+     * Signal the end of input, so a trailing line without line break is returned by {@link #next()}.
+     */
+    public void finish() {
+        eof = true;
+    }
+
+    /**
+     * Get the buffer containing the current line.
+     *
+     * @return The buffer.
+     */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    /**
+     * Get the offset of the current line within the buffer.
+     *
+     * @return The offset.
+     */
+    public int offset() {
+        return lineStart;
+    }
+
+    /**
+     * Get the length of the current line, excluding the line terminator.
+     *
+     * @return The length in bytes.
+     */
+    public int length() {
+        return lineLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Make room for more data at the end of the buffer, compacting or growing it as required.
+     *
+     * @return Position at which new data can be written.
+     */
+    private int reserve() {
+        if (end < buf.length) {
+            return end;
+        } else if (start > 0) {
+            // Move pending bytes to the start of the buffer.
+            System.arraycopy(buf, start, buf, 0, end - start);
+            scan -= start;
+            end -= start;
+            start = 0;
+        } else {
+            // Line does not fit into the buffer.
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        return end;
+    }
+
+    /**
+     * Set the current line and strip a trailing carriage return.
+     *
+     * @param from Start index (inclusive).
+     * @param to   End index (exclusive).
+     */
+    private void setLine(final int from, final int to) {
+        lineStart = from;
+        lineLength = to > from && buf[to - 1] == '\r' ? to - from - 1 : to - from;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+/**
+ * Policy for bounded consumer queues that are full.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public enum OverflowPolicy {
+    /**
+     * Block the producer until space is available.
+     */
+    BLOCK,
+    /**
+     * Discard the oldest pending item to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * Discard the new item.
+     */
+    DROP_NEWEST
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Trip;
+import tools.jackson.core.JacksonException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static de.stklcode.pubtrans.ura.reader.UraLineDecoder.F_TRIP_ID;
+import static de.stklcode.pubtrans.ura.reader.UraLineDecoder.RES_TYPE_PREDICTION;
+
+/**
+ * Parallel decoding of raw prediction lines.
+ * <p>
+ * Lines are framed on the reading thread and dispatched to a fixed number of lanes, each decoding on its own thread
+ * with its own {@link UraLineDecoder}. The lane is selected by the raw trip ID, so all predictions of a trip are
+ * decoded and delivered in stream order, while different trips are processed in parallel.
+ * <p>
+ * Lanes are bounded {@link QueuedConsumer}s with {@link OverflowPolicy#BLOCK}, so the reading thread is blocked if
+ * decoding falls behind, which propagates backpressure to the connection.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+final class ParsePipeline implements AutoCloseable {
+    private static final int LANE_CAPACITY = 1024;
+
+    private final List<QueuedConsumer<Line>> lanes;
+    private final List<ExecutorService> executors;
+
+    /**
+     * Initialize the pipeline.
+     *
+     * @param parallelism Number of lanes.
+     */
+    ParsePipeline(final int parallelism) {
+        this.lanes = new ArrayList<>(parallelism);
+        this.executors = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            UraLineDecoder decoder = new UraLineDecoder();
+            ExecutorService executor = QueuedConsumer.newDaemonExecutor("ura-parse-" + i);
+            executors.add(executor);
+            lanes.add(
+                QueuedConsumer.<Line>forConsumer(line -> line.decode(decoder))
+                    .withCapacity(LANE_CAPACITY)
+                    .withOverflowPolicy(OverflowPolicy.BLOCK)
+                    .withExecutor(executor)
+                    .build()
+            );
+        }
+    }
+
+    /**
+     * Dispatch a raw line for decoding.
+     * The line is copied, so the buffer can be reused afterwards. Lines that are certainly no prediction are skipped.
+     *
+     * @param buf    Buffer containing the line.
+     * @param off    Offset of the line.
+     * @param len    Length of the line.
+     * @param target Target for the decoding result.
+     */
+    void dispatch(final byte[] buf, final int off, final int len, final Target target) {
+        int lane = lane(buf, off, off + len);
+        if (lane >= 0) {
+            lanes.get(lane).accept(new Line(Arrays.copyOfRange(buf, off, off + len), target));
+        }
+    }
+
+    /**
+     * Select the lane for a line by the hash of its raw trip ID.
+     * Invalid lines are passed to the first lane, so the error is raised by the decoder.
+     *
+     * @param buf Buffer containing the line.
+     * @param off Offset of the line.
+     * @param end End of the line (exclusive).
+     * @return Lane index or {@code -1}, if the line is no prediction.
+     */
+    private int lane(final byte[] buf, final int off, final int end) {
+        int i = LineFilter.firstField(buf, off, end);
+        if (i < 0) {
+            return LineFilter.skipWhitespace(buf, off, end) == end ? -1 : 0;
+        }
+
+        int type = LineFilter.rowType(buf, i, end);
+        if (type < 0) {
+            return 0;
+        } else if (type != RES_TYPE_PREDICTION) {
+            return -1;
+        }
+
+        i = LineFilter.field(buf, off, end, F_TRIP_ID);
+        int to = i < 0 ? -1 : LineFilter.valueEnd(buf, i, end);
+        if (to < 0) {
+            return 0;
+        }
+
+        int h = 0;
+        for (int j = i; j < to; j++) {
+            h = 31 * h + buf[j];
+        }
+        return Math.floorMod(h ^ (h >>> 16), lanes.size());
+    }
+
+    /**
+     * Get the number of lines waiting to be decoded.
+     *
+     * @return Number of pending lines.
+     */
+    int lag() {
+        return lanes.stream().mapToInt(QueuedConsumer::lag).sum();
+    }
+
+    /**
+     * Close the pipeline.
+     * Lines already dispatched are still decoded, the lane threads terminate afterwards.
+     */
+    @Override
+    public void close() {
+        lanes.forEach(QueuedConsumer::close);
+        executors.forEach(ExecutorService::shutdown);
+    }
+
+    /**
+     * Target for decoded trips of a connection.
+     */
+    interface Target {
+        /**
+         * Check if the target still accepts results.
+         * Lines of inactive targets are skipped without decoding.
+         *
+         * @return {@code true}, if active.
+         */
+        boolean active();
+
+        /**
+         * Handle a decoded trip.
+         * Invoked on the lane thread.
+         *
+         * @param trip The trip.
+         */
+        void decoded(Trip trip);
+
+        /**
+         * Handle a decoding error.
+         * Invoked on the lane thread.
+         *
+         * @param cause The error.
+         */
+        void failed(Exception cause);
+    }
+
+    /**
+     * Raw line with its target.
+     *
+     * @param data   Line data.
+     * @param target Target for the result.
+     */
+    private record Line(byte[] data, Target target) {
+        /**
+         * Decode the line and pass the result to the target.
+         *
+         * @param decoder The lane's decoder.
+         */
+        private void decode(final UraLineDecoder decoder) {
+            if (!target.active()) {
+                return;
+            }
+
+            try {
+                Trip trip = decoder.decodeTrip(data, 0, data.length);
+                if (trip != null) {
+                    target.decoded(trip);
+                }
+            } catch (IOException | JacksonException e) {
+                target.failed(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Consumer that decouples a delegate consumer from the producer using a bounded queue.
+ * <p>
+ * Items are queued by {@link #accept(Object)} and passed to the delegate asynchronously on a dedicated executor,
+ * so a slow consumer does not stall the {@link AsyncUraTripReader} and other consumers. If the queue is full, the
+ * configured {@link OverflowPolicy} applies.
+ * <p>
+ * By default, each instance uses its own daemon thread. Any executor can be provided instead, e.g. a virtual thread
+ * executor on Java 21 or later. The delegate is never invoked concurrently.
+ *
+ * @param <T> Item type.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class QueuedConsumer<T> implements Consumer<T>, AutoCloseable {
+    private final Consumer<T> delegate;
+    private final BlockingQueue<T> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Initialize the consumer.
+     * Use {@link #forConsumer(Consumer)} to get a builder.
+     *
+     * @param delegate       Delegate consumer.
+     * @param capacity       Queue capacity.
+     * @param overflowPolicy Policy if the queue is full.
+     * @param executor       Executor to run the delegate, {@code null} to use a dedicated thread.
+     */
+    private QueuedConsumer(Consumer<T> delegate, int capacity, OverflowPolicy overflowPolicy, Executor executor) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy must not be null");
+        if (executor != null) {
+            this.executor = executor;
+            this.ownExecutor = null;
+        } else {
+            this.ownExecutor = newDaemonExecutor("ura-queued-consumer");
+            this.executor = ownExecutor;
+        }
+    }
+
+    /**
+     * Get new {@link Builder} for the given delegate consumer.
+     *
+     * @param delegate Delegate consumer.
+     * @param <T>      Item type.
+     * @return Builder instance.
+     */
+    public static <T> Builder<T> forConsumer(Consumer<T> delegate) {
+        return new Builder<>(delegate);
+    }
+
+    /**
+     * Queue an item for the delegate.
+     * Items passed after {@link #close()} are dropped.
+     *
+     * @param item The item.
+     */
+    @Override
+    public void accept(T item) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(item);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                    return;
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(item)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+            case DROP_NEWEST:
+            default:
+                if (!queue.offer(item)) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+        }
+
+        if (wip.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Executor has been shut down concurrently, e.g. by close(), so queued items are never delivered.
+                discard();
+            }
+        }
+    }
+
+    /**
+     * Pass all queued items to the delegate.
+     */
+    private void drain() {
+        int missed = 1;
+        do {
+            T item;
+            while ((item = queue.poll()) != null) {
+                try {
+                    delegate.accept(item);
+                    delivered.incrementAndGet();
+                } catch (Throwable e) {
+                    // Keep draining, otherwise the consumer would stall and block producers on a full queue.
+                    failed.incrementAndGet();
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Drop all queued items, if the executor rejects the drain task.
+     * This also releases producers blocked on a full queue.
+     */
+    private void discard() {
+        int missed = 1;
+        do {
+            while (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Create a single thread executor with a daemon thread, so it does not prevent the JVM from exiting.
+     *
+     * @param name Thread name.
+     * @return The executor.
+     */
+    static ExecutorService newDaemonExecutor(String name) {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the current lag, i.e. the number of items waiting for the delegate.
+     *
+     * @return Number of pending items.
+     */
+    public int lag() {
+        return queue.size();
+    }
+
+    /**
+     * Get the number of items passed to the delegate.
+     *
+     * @return Number of delivered items.
+     */
+    public long delivered() {
+        return delivered.get();
+    }
+
+    /**
+     * Get the number of items discarded because of a full queue, after closing or because the executor rejected them.
+     *
+     * @return Number of dropped items.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Get the number of items for which the delegate has thrown an exception or error.
+     *
+     * @return Number of failed items.
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Close the consumer.
+     * Further items are dropped. Items already queued are still passed to the delegate.
+     * A dedicated thread is terminated afterwards, an executor provided by the user is not shut down.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Builder for {@link QueuedConsumer} objects.
+     *
+     * @param <T> Item type.
+     */
+    public static class Builder<T> {
+        private final Consumer<T> delegate;
+        private int capacity;
+        private OverflowPolicy overflowPolicy;
+        private Executor executor;
+
+        /**
+         * Initialize the builder with default values, i.e. a capacity of 1024 items, the {@link OverflowPolicy#BLOCK}
+         * policy and a dedicated thread.
+         *
+         * @param delegate Delegate consumer.
+         */
+        private Builder(Consumer<T> delegate) {
+            this.delegate = delegate;
+            this.capacity = 1024;
+            this.overflowPolicy = OverflowPolicy.BLOCK;
+            this.executor = null;
+        }
+
+        /**
+         * Specify the queue capacity.
+         *
+         * @param capacity Maximum number of pending items.
+         * @return The builder.
+         */
+        public Builder<T> withCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Specify the policy if the queue is full.
+         *
+         * @param overflowPolicy Overflow policy.
+         * @return The builder.
+         */
+        public Builder<T> withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Specify the executor to run the delegate on.
+         *
+         * @param executor The executor.
+         * @return The builder.
+         */
+        public Builder<T> withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Finally build the consumer.
+         *
+         * @return The consumer.
+         */
+        public QueuedConsumer<T> build() {
+            return new QueuedConsumer<>(delegate, capacity, overflowPolicy, executor);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.time.Duration;
+
+/**
+ * Connection event of the {@link AsyncUraTripReader} with a {@link ReconnectPolicy}.
+ *
+ * @param type    Event type.
+ * @param attempt Number of the current reconnect attempt.
+ * @param delay   Delay before the next attempt ({@code null} unless type is {@link Type#DISCONNECTED}).
+ * @param cause   Error that caused the disconnect ({@code null} if the stream has been closed by the server).
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public record ReconnectEvent(Type type, int attempt, Duration delay, Throwable cause) {
+    /**
+     * Event types.
+     */
+    public enum Type {
+        /**
+         * Connection lost, reconnect scheduled.
+         */
+        DISCONNECTED,
+        /**
+         * Connection successfully reestablished.
+         */
+        RECONNECTED,
+        /**
+         * Maximum number of attempts exceeded, the reader has stopped.
+         */
+        FAILED
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reconnect policy for the {@link AsyncUraTripReader}.
+ * <p>
+ * Reconnect attempts are delayed with exponential backoff. The delay for attempt {@code n} is
+ * {@code initialDelay * multiplier^(n-1)}, capped at {@code maxDelay} and reduced by a random fraction of up to
+ * {@code jitter}, so multiple readers do not reconnect at the same time.
+ *
+ * @param initialDelay Delay before the first reconnect attempt.
+ * @param maxDelay     Maximum delay between attempts.
+ * @param multiplier   Backoff multiplier ({@code >= 1}).
+ * @param jitter       Maximum random fraction subtracted from each delay ({@code 0..1}).
+ * @param maxAttempts  Maximum number of consecutive attempts before the reader fails.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public record ReconnectPolicy(
+    Duration initialDelay,
+    Duration maxDelay,
+    double multiplier,
+    double jitter,
+    int maxAttempts
+) implements Serializable {
+
+    /**
+     * Validate the policy parameters.
+     *
+     * @param initialDelay Delay before the first reconnect attempt.
+     * @param maxDelay     Maximum delay between attempts.
+     * @param multiplier   Backoff multiplier ({@code >= 1}).
+     * @param jitter       Maximum random fraction subtracted from each delay ({@code 0..1}).
+     * @param maxAttempts  Maximum number of consecutive attempts before the reader fails.
+     */
+    public ReconnectPolicy {
+        Objects.requireNonNull(initialDelay, "initialDelay must not be null");
+        Objects.requireNonNull(maxDelay, "maxDelay must not be null");
+        if (initialDelay.isNegative() || maxDelay.compareTo(initialDelay) < 0) {
+            throw new IllegalArgumentException("Delays must satisfy 0 <= initialDelay <= maxDelay");
+        } else if (multiplier < 1.0) {
+            throw new IllegalArgumentException("Multiplier must not be less than 1");
+        } else if (jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 1");
+        } else if (maxAttempts < 0) {
+            throw new IllegalArgumentException("Maximum number of attempts must not be negative");
+        }
+    }
+
+    /**
+     * Get new {@link Builder} with default values, i.e. an initial delay of 1 second, doubled up to 1 minute with
+     * a jitter of 50% and an unlimited number of attempts.
+     *
+     * @return Policy Builder instance.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Calculate the delay for the given attempt.
+     *
+     * @param attempt Attempt number, starting at 1.
+     * @return The delay.
+     */
+    public Duration delay(int attempt) {
+        double delay = initialDelay.toMillis() * Math.pow(multiplier, Math.max(attempt - 1, 0));
+        delay = Math.min(delay, maxDelay.toMillis());
+        if (jitter > 0) {
+            delay *= 1.0 - jitter * ThreadLocalRandom.current().nextDouble();
+        }
+        return Duration.ofMillis(Math.round(delay));
+    }
+
+    /**
+     * Builder for {@link ReconnectPolicy} objects.
+     */
+    public static class Builder {
+        private Duration initialDelay;
+        private Duration maxDelay;
+        private double multiplier;
+        private double jitter;
+        private int maxAttempts;
+
+        /**
+         * Initialize the builder with default values.
+         * Use {@link ReconnectPolicy#builder()} to get a builder instance.
+         */
+        private Builder() {
+            this.initialDelay = Duration.ofSeconds(1);
+            this.maxDelay = Duration.ofMinutes(1);
+            this.multiplier = 2.0;
+            this.jitter = 0.5;
+            this.maxAttempts = Integer.MAX_VALUE;
+        }
+
+        /**
+         * Specify the delay before the first reconnect attempt.
+         *
+         * @param initialDelay Initial delay.
+         * @return The builder.
+         */
+        public Builder withInitialDelay(Duration initialDelay) {
+            this.initialDelay = initialDelay;
+            return this;
+        }
+
+        /**
+         * Specify the maximum delay between two attempts.
+         *
+         * @param maxDelay Maximum delay.
+         * @return The builder.
+         */
+        public Builder withMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Specify the backoff multiplier.
+         *
+         * @param multiplier Multiplier ({@code >= 1}).
+         * @return The builder.
+         */
+        public Builder withMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Specify the jitter, i.e. the maximum random fraction subtracted from each delay.
+         *
+         * @param jitter Jitter ({@code 0..1}).
+         * @return The builder.
+         */
+        public Builder withJitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Specify the maximum number of consecutive reconnect attempts.
+         *
+         * @param maxAttempts Maximum number of attempts.
+         * @return The builder.
+         */
+        public Builder withMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Finally build the policy object.
+         *
+         * @return The policy.
+         */
+        public ReconnectPolicy build() {
+            return new ReconnectPolicy(initialDelay, maxDelay, multiplier, jitter, maxAttempts);
+        }
+    }
+}
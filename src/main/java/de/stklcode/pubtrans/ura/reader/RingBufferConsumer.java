@@ -0,0 +1,334 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Consumer that hands items over to multiple delegate consumers using a pre-allocated ring buffer.
+ * <p>
+ * Each delegate runs on its own daemon thread and reads all items from the ring buffer in order. The handoff does not
+ * use locks, and no objects are allocated per item. The slots are reused, so each slot only holds a reference to an
+ * item until it is overwritten, i.e. up to the capacity of processed items remain reachable while the consumer is open.
+ * After {@link #close()}, the slots are cleared once all delegate threads have terminated. Waiting threads follow the
+ * configured {@link WaitStrategy}. If the slowest delegate falls behind by the full capacity, the producer waits until
+ * a slot becomes free.
+ * <p>
+ * The ring buffer supports a single producer only, i.e. {@link #accept(Object)} must not be invoked concurrently.
+ * This is the case for an {@link AsyncUraTripReader} without parallel parsing. With parallel parsing, the reader
+ * rejects a ring buffer consumer, so it has to be wrapped in a {@link QueuedConsumer}.
+ *
+ * @param <T> Item type.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class RingBufferConsumer<T> implements Consumer<T>, AutoCloseable {
+    private final Slot<T>[] slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final List<Processor> processors;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger running;
+    private long gatingSequence = -1;
+    private volatile boolean closed;
+    private volatile boolean publishing;
+
+    /**
+     * Initialize the ring buffer and start the delegate threads.
+     * Use {@link #forConsumers(List)} to get a builder.
+     *
+     * @param delegates    Delegate consumers.
+     * @param capacity     Number of slots, a power of 2.
+     * @param waitStrategy Strategy for waiting threads.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private RingBufferConsumer(List<Consumer<T>> delegates, int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of 2");
+        } else if (delegates.isEmpty()) {
+            throw new IllegalArgumentException("at least one delegate consumer required");
+        }
+
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot<>();
+        }
+        this.mask = capacity - 1;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy, "waitStrategy must not be null");
+        this.processors = new ArrayList<>(delegates.size());
+        for (Consumer<T> delegate : delegates) {
+            processors.add(new Processor(Objects.requireNonNull(delegate, "delegate must not be null")));
+        }
+        this.running = new AtomicInteger(processors.size());
+        for (int i = 0; i < processors.size(); i++) {
+            Thread thread = new Thread(processors.get(i), "ura-ring-consumer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Get new {@link Builder} for the given delegate consumers.
+     *
+     * @param delegates Delegate consumers.
+     * @param <T>       Item type.
+     * @return Builder instance.
+     */
+    public static <T> Builder<T> forConsumers(List<Consumer<T>> delegates) {
+        return new Builder<>(delegates);
+    }
+
+    /**
+     * Publish an item to all delegates.
+     * Waits for a free slot, if the slowest delegate lags by the full capacity. Items passed after {@link #close()}
+     * are dropped.
+     *
+     * @param item The item.
+     */
+    @Override
+    public void accept(T item) {
+        // Delegate threads do not terminate while an item is published, so it cannot be lost when closed concurrently.
+        publishing = true;
+        try {
+            publish(item);
+        } finally {
+            publishing = false;
+        }
+    }
+
+    /**
+     * Publish an item, if the consumer is still open.
+     *
+     * @param item The item.
+     */
+    private void publish(T item) {
+        long next = cursor.get() + 1;
+        long wrapPoint = next - slots.length;
+
+        // Wait until all delegates have passed the slot, the minimum is cached to avoid scanning on every item.
+        int attempt = 0;
+        while (wrapPoint > gatingSequence) {
+            if (closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            gatingSequence = minSequence();
+            if (wrapPoint > gatingSequence) {
+                waitStrategy.idle(attempt++);
+            }
+        }
+
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        slots[(int) next & mask].value = item;
+        cursor.setRelease(next);
+    }
+
+    /**
+     * Get the sequence of the slowest delegate.
+     *
+     * @return The minimum sequence.
+     */
+    private long minSequence() {
+        long min = Long.MAX_VALUE;
+        for (Processor processor : processors) {
+            min = Math.min(min, processor.sequence.getAcquire());
+        }
+        return min;
+    }
+
+    /**
+     * Get the sequence of the last published item.
+     *
+     * @return The sequence, starting at 0 for the first item.
+     */
+    public long cursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Get the current lag of a delegate, i.e. the number of items published but not yet processed by it.
+     *
+     * @param index Index of the delegate in the list passed to the builder.
+     * @return Number of pending items.
+     */
+    public long lag(int index) {
+        return cursor.get() - processors.get(index).sequence.getAcquire();
+    }
+
+    /**
+     * Get the number of items discarded after closing.
+     *
+     * @return Number of dropped items.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Get the number of items for which a delegate has thrown an exception or error.
+     *
+     * @return Number of failed items.
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Close the consumer.
+     * Further items are dropped. Items already published are still passed to the delegates, their threads terminate
+     * afterwards. The last terminating thread releases the references held by the slots.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Reusable ring buffer slot.
+     *
+     * @param <T> Item type.
+     */
+    private static final class Slot<T> {
+        private T value;
+    }
+
+    /**
+     * Event loop of a single delegate.
+     */
+    private final class Processor implements Runnable {
+        private final Consumer<T> delegate;
+        private final AtomicLong sequence = new AtomicLong(-1);
+
+        /**
+         * Initialize the processor.
+         *
+         * @param delegate Delegate consumer.
+         */
+        private Processor(Consumer<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            try {
+                process();
+            } finally {
+                // Release the items once no delegate can read the slots anymore.
+                if (running.decrementAndGet() == 0) {
+                    for (Slot<T> slot : slots) {
+                        slot.value = null;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Pass published items to the delegate until the consumer is closed and all items have been processed.
+         */
+        private void process() {
+            long next = sequence.get() + 1;
+            int attempt = 0;
+            while (true) {
+                long available = cursor.getAcquire();
+                if (available < next) {
+                    if (closed && !publishing && cursor.getAcquire() < next) {
+                        return;
+                    }
+                    waitStrategy.idle(attempt++);
+                    continue;
+                }
+
+                // Process all available items and release the slots afterwards.
+                attempt = 0;
+                for (; next <= available; next++) {
+                    try {
+                        delegate.accept(slots[(int) next & mask].value);
+                    } catch (Throwable e) {
+                        // Keep the thread running, a frozen sequence would block the producer for good.
+                        failed.incrementAndGet();
+                    }
+                }
+                sequence.setRelease(available);
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link RingBufferConsumer} objects.
+     *
+     * @param <T> Item type.
+     */
+    public static class Builder<T> {
+        private final List<Consumer<T>> delegates;
+        private int capacity;
+        private WaitStrategy waitStrategy;
+
+        /**
+         * Initialize the builder with default values, i.e. a capacity of 1024 items and the {@link WaitStrategy#PARK}
+         * strategy.
+         *
+         * @param delegates Delegate consumers.
+         */
+        private Builder(List<Consumer<T>> delegates) {
+            this.delegates = new ArrayList<>(delegates);
+            this.capacity = 1024;
+            this.waitStrategy = WaitStrategy.PARK;
+        }
+
+        /**
+         * Specify the ring buffer capacity.
+         *
+         * @param capacity Number of slots, must be a power of 2.
+         * @return The builder.
+         */
+        public Builder<T> withCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Specify the strategy for waiting threads.
+         *
+         * @param waitStrategy Wait strategy.
+         * @return The builder.
+         */
+        public Builder<T> withWaitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * Finally build the consumer and start the delegate threads.
+         *
+         * @return The consumer.
+         */
+        public RingBufferConsumer<T> build() {
+            return new RingBufferConsumer<>(delegates, capacity, waitStrategy);
+        }
+    }
+}
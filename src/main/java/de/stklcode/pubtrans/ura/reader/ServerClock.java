@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Clock following the server time of a stream.
+ * <p>
+ * Stream responses start with a {@code [4, version, timestamp]} line containing the current server time. The clock
+ * stores the offset between this timestamp and the local system clock, so predictions can be compared to the time
+ * base of the server, even if the local clock is skewed. Until the first timestamp has been received, the clock
+ * equals the system clock.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class ServerClock extends Clock {
+    private volatile long offset;
+
+    /**
+     * Initialize the clock without offset.
+     */
+    public ServerClock() {
+        this.offset = 0L;
+    }
+
+    /**
+     * Synchronize the clock with a server timestamp.
+     *
+     * @param serverTime Server time in milliseconds since epoch, received just now.
+     */
+    public void sync(long serverTime) {
+        this.offset = serverTime - System.currentTimeMillis();
+    }
+
+    /**
+     * Get the offset of the server time relative to the system clock.
+     *
+     * @return Offset in milliseconds.
+     */
+    public long offset() {
+        return offset;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    /**
+     * Get a copy of this clock with a different time zone.
+     * The copy uses the current offset and is not synchronized anymore.
+     *
+     * @param zone The time zone.
+     * @return The clock.
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return Clock.offset(Clock.system(zone), Duration.ofMillis(offset));
+    }
+
+    @Override
+    public long millis() {
+        return System.currentTimeMillis() + offset;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis());
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel to expire stream-derived state, e.g. predictions after their estimated time.
+ * <p>
+ * Items are scheduled with an absolute deadline and passed to the listeners once the clock has passed it. Scheduling
+ * and cancelling are O(1) and expiry is O(1) amortized per item, regardless of the number of scheduled items. So
+ * indexes keyed on trips do not have to scan all entries periodically.
+ * <p>
+ * The wheel consists of 5 levels of 64 buckets each. Level 0 covers 64 ticks, each further level covers 64 times the
+ * range of the level below, so with the default tick of 1 second deadlines up to 34 years ahead are supported.
+ * Items on higher levels are moved down as the time advances. Deadlines are rounded up to full ticks, so items never
+ * expire early.
+ * <p>
+ * The wheel does not run a thread. Expiry is triggered by calling {@link #advance()}, e.g. for each received trip or
+ * from a scheduled task. Use {@link AsyncUraTripReader#clock()} as clock to follow the server time of a stream.
+ *
+ * @param <T> Item type.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class TimingWheel<T> {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 5;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tick;
+    private final Clock clock;
+    private final List<Consumer<? super T>> listeners;
+    private final Timeout<T>[] buckets;
+    private volatile long currentTick;
+    private int size;
+
+    /**
+     * Initialize the timing wheel.
+     * Use {@link #builder()} to get a builder.
+     *
+     * @param tick  Tick duration, i.e. resolution of the wheel.
+     * @param clock Clock to determine expired items.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private TimingWheel(Duration tick, Clock clock) {
+        this.tick = tick.toMillis();
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        if (this.tick < 1) {
+            throw new IllegalArgumentException("tick must be at least 1 millisecond");
+        }
+
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.buckets = new Timeout[LEVELS * WHEEL_SIZE];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Timeout<>(this, null, 0L);
+        }
+        this.currentTick = Math.floorDiv(clock.millis(), this.tick);
+    }
+
+    /**
+     * Get new {@link Builder} for a timing wheel.
+     *
+     * @param <T> Item type.
+     * @return Builder instance.
+     */
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Register a listener for expired items.
+     * Listeners are invoked on the thread calling {@link #advance()}.
+     *
+     * @param listener New listener.
+     */
+    public void addListener(Consumer<? super T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Schedule an item for expiry.
+     * Items with a deadline in the past expire on the next tick.
+     *
+     * @param item     The item.
+     * @param deadline Deadline in milliseconds since epoch.
+     * @return Handle to cancel the timeout.
+     */
+    public synchronized Timeout<T> schedule(T item, long deadline) {
+        Timeout<T> timeout = new Timeout<>(this, item, deadline);
+        timeout.deadlineTick = Math.max(-Math.floorDiv(-deadline, tick), currentTick + 1);
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Advance the wheel to the current time of the clock and notify the listeners of all expired items.
+     *
+     * @return Number of expired items.
+     */
+    public int advance() {
+        long targetTick = Math.floorDiv(clock.millis(), tick);
+        if (targetTick <= currentTick) {
+            // Still within the current tick, nothing to do.
+            return 0;
+        }
+
+        List<T> expired = collect(targetTick);
+        for (T item : expired) {
+            listeners.forEach(l -> l.accept(item));
+        }
+        return expired.size();
+    }
+
+    /**
+     * Advance the wheel tick by tick and remove all expired items.
+     *
+     * @param targetTick Tick to advance to.
+     * @return The expired items.
+     */
+    private synchronized List<T> collect(long targetTick) {
+        if (size == 0) {
+            // Nothing scheduled, skip directly to the target.
+            currentTick = Math.max(currentTick, targetTick);
+            return Collections.emptyList();
+        }
+
+        List<T> expired = null;
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            // Move items of higher levels down, if the lower level has completed a round.
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                Timeout<T> head = bucket(level, currentTick >> (WHEEL_BITS * level));
+                for (Timeout<T> t = head.next; t != head; t = head.next) {
+                    t.unlink();
+                    insert(t);
+                }
+            }
+
+            Timeout<T> head = bucket(0, currentTick);
+            for (Timeout<T> t = head.next; t != head; t = head.next) {
+                t.unlink();
+                size--;
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(t.item);
+            }
+        }
+
+        return expired != null ? expired : Collections.emptyList();
+    }
+
+    /**
+     * Insert a timeout into the bucket matching its deadline.
+     *
+     * @param timeout The timeout.
+     */
+    private void insert(Timeout<T> timeout) {
+        long delta = Math.max(timeout.deadlineTick - currentTick, 0L);
+        long target = currentTick + Math.min(delta, MAX_DELTA);
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        timeout.linkBefore(bucket(level, target >> (WHEEL_BITS * level)));
+    }
+
+    /**
+     * Get the head of a bucket.
+     *
+     * @param level Wheel level.
+     * @param slot  Slot number, only the lower bits are used.
+     * @return The sentinel of the bucket list.
+     */
+    private Timeout<T> bucket(int level, long slot) {
+        return buckets[level * WHEEL_SIZE + (int) (slot & WHEEL_MASK)];
+    }
+
+    /**
+     * Get the number of scheduled items.
+     *
+     * @return Number of items.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Handle of a scheduled item.
+     *
+     * @param <T> Item type.
+     */
+    public static final class Timeout<T> {
+        private final TimingWheel<T> wheel;
+        private final T item;
+        private final long deadline;
+        private long deadlineTick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        /**
+         * Initialize a timeout, or the sentinel of a bucket if no item is given.
+         *
+         * @param wheel    The wheel.
+         * @param item     The item.
+         * @param deadline Deadline in milliseconds since epoch.
+         */
+        private Timeout(TimingWheel<T> wheel, T item, long deadline) {
+            this.wheel = wheel;
+            this.item = item;
+            this.deadline = deadline;
+            this.prev = this;
+            this.next = this;
+        }
+
+        /**
+         * Get the scheduled item.
+         *
+         * @return The item.
+         */
+        public T item() {
+            return item;
+        }
+
+        /**
+         * Get the deadline.
+         *
+         * @return Deadline in milliseconds since epoch.
+         */
+        public long deadline() {
+            return deadline;
+        }
+
+        /**
+         * Check if the item is still scheduled, i.e. neither expired nor cancelled.
+         *
+         * @return {@code true}, if scheduled.
+         */
+        public boolean isScheduled() {
+            synchronized (wheel) {
+                return next != this;
+            }
+        }
+
+        /**
+         * Cancel the timeout.
+         *
+         * @return {@code true}, if the item has been removed, {@code false} if it was already expired or cancelled.
+         */
+        public boolean cancel() {
+            synchronized (wheel) {
+                if (next == this) {
+                    return false;
+                }
+                unlink();
+                wheel.size--;
+                return true;
+            }
+        }
+
+        /**
+         * Link this timeout at the end of a bucket list.
+         *
+         * @param head Sentinel of the bucket.
+         */
+        private void linkBefore(Timeout<T> head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        /**
+         * Remove this timeout from its bucket list.
+         */
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+    }
+
+    /**
+     * Builder for {@link TimingWheel} objects.
+     *
+     * @param <T> Item type.
+     */
+    public static class Builder<T> {
+        private Duration tick;
+        private Clock clock;
+
+        /**
+         * Initialize the builder with default values, i.e. a tick of 1 second and the system clock.
+         */
+        private Builder() {
+            this.tick = Duration.ofSeconds(1);
+            this.clock = Clock.systemUTC();
+        }
+
+        /**
+         * Specify the tick duration, i.e. the resolution of the wheel.
+         *
+         * @param tick Tick duration.
+         * @return The builder.
+         */
+        public Builder<T> withTick(Duration tick) {
+            this.tick = tick;
+            return this;
+        }
+
+        /**
+         * Specify the clock to determine expired items.
+         *
+         * @param clock The clock.
+         * @return The builder.
+         */
+        public Builder<T> withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Finally build the timing wheel.
+         *
+         * @return The timing wheel.
+         */
+        public TimingWheel<T> build() {
+            return new TimingWheel<>(tick, clock);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Trip;
+
+/**
+ * Change of a prediction, emitted by the {@link DeltaConsumer}.
+ *
+ * @param type     Event type.
+ * @param trip     Current state of the prediction, i.e. the last known state for {@link Type#EXPIRED} events.
+ * @param previous Previous state of the prediction ({@code null} for {@link Type#ADDED} and {@link Type#EXPIRED}).
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public record TripEvent(Type type, Trip trip, Trip previous) {
+    /**
+     * Event types.
+     */
+    public enum Type {
+        /**
+         * New prediction for a trip at a stop.
+         */
+        ADDED,
+        /**
+         * Estimated time changed by more than the configured threshold.
+         */
+        ETA_CHANGED,
+        /**
+         * Vehicle ID changed.
+         */
+        VEHICLE_CHANGED,
+        /**
+         * Destination text changed.
+         */
+        DESTINATION_CHANGED,
+        /**
+         * Estimated time has passed by more than the configured expiry period, the prediction has been removed.
+         */
+        EXPIRED
+    }
+}
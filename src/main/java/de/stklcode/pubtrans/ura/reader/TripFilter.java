@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Trip;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Local filter for trips, evaluating the same criteria as the API query.
+ * <p>
+ * Each criterion matches any trip if {@code null} or empty. Multiple values of a criterion are combined with OR,
+ * different criteria with AND.
+ *
+ * @param stopIDs          Stop IDs.
+ * @param stopNames        Stop names.
+ * @param lineIDs          Line IDs.
+ * @param lineNames        Line names.
+ * @param direction        Direction ID.
+ * @param destinationNames Destination names.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public record TripFilter(
+    Set<String> stopIDs,
+    Set<String> stopNames,
+    Set<String> lineIDs,
+    Set<String> lineNames,
+    Integer direction,
+    Set<String> destinationNames
+) implements Predicate<Trip> {
+
+    /**
+     * Construct filter with defensive copies of all sets.
+     *
+     * @param stopIDs          Stop IDs.
+     * @param stopNames        Stop names.
+     * @param lineIDs          Line IDs.
+     * @param lineNames        Line names.
+     * @param direction        Direction ID.
+     * @param destinationNames Destination names.
+     */
+    public TripFilter {
+        stopIDs = copy(stopIDs);
+        stopNames = copy(stopNames);
+        lineIDs = copy(lineIDs);
+        lineNames = copy(lineNames);
+        destinationNames = copy(destinationNames);
+    }
+
+    /**
+     * Get a filter that matches all trips.
+     *
+     * @return The filter.
+     */
+    public static TripFilter all() {
+        return new TripFilter(null, null, null, null, null, null);
+    }
+
+    /**
+     * Get new {@link Builder} for a filter.
+     *
+     * @return Filter Builder instance.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public boolean test(Trip trip) {
+        return matches(stopIDs, trip.stop() != null ? trip.stop().id() : null) &&
+            matches(stopNames, trip.stop() != null ? trip.stop().name() : null) &&
+            matches(lineIDs, trip.lineID()) &&
+            matches(lineNames, trip.lineName()) &&
+            (direction == null || direction == trip.directionID()) &&
+            matches(destinationNames, trip.destinationName());
+    }
+
+    /**
+     * Check if a value matches a filter criterion.
+     *
+     * @param criterion Set of accepted values, empty to accept any value.
+     * @param value     The value.
+     * @return {@code true} if the value is accepted.
+     */
+    private static boolean matches(Set<String> criterion, String value) {
+        return criterion.isEmpty() || (value != null && criterion.contains(value));
+    }
+
+    /**
+     * Create an immutable copy of the given set.
+     *
+     * @param set The set, might be {@code null}.
+     * @return Immutable copy, empty if {@code null}.
+     */
+    private static Set<String> copy(Set<String> set) {
+        return set == null ? Set.of() : Set.copyOf(set);
+    }
+
+    /**
+     * Convert filter values to a set, ignoring duplicates.
+     *
+     * @param values Filter values.
+     * @return Set of values.
+     */
+    private static Set<String> toSet(String[] values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    /**
+     * Builder for {@link TripFilter} objects.
+     */
+    public static class Builder {
+        private Set<String> stopIDs;
+        private Set<String> stopNames;
+        private Set<String> lineIDs;
+        private Set<String> lineNames;
+        private Integer direction;
+        private Set<String> destinationNames;
+
+        /**
+         * Initialize the builder without criteria.
+         * Use {@link TripFilter#builder()} to get a builder instance.
+         */
+        private Builder() {
+        }
+
+        /**
+         * Filter by stop IDs.
+         *
+         * @param stopIDs Stop IDs.
+         * @return The builder.
+         */
+        public Builder forStops(final String... stopIDs) {
+            this.stopIDs = toSet(stopIDs);
+            return this;
+        }
+
+        /**
+         * Filter by stop names.
+         *
+         * @param stopNames Stop names.
+         * @return The builder.
+         */
+        public Builder forStopsByName(final String... stopNames) {
+            this.stopNames = toSet(stopNames);
+            return this;
+        }
+
+        /**
+         * Filter by line IDs.
+         *
+         * @param lineIDs Line IDs.
+         * @return The builder.
+         */
+        public Builder forLines(final String... lineIDs) {
+            this.lineIDs = toSet(lineIDs);
+            return this;
+        }
+
+        /**
+         * Filter by line names.
+         *
+         * @param lineNames Line names.
+         * @return The builder.
+         */
+        public Builder forLinesByName(final String... lineNames) {
+            this.lineNames = toSet(lineNames);
+            return this;
+        }
+
+        /**
+         * Filter by direction ID.
+         *
+         * @param direction Direction ID.
+         * @return The builder.
+         */
+        public Builder forDirection(final Integer direction) {
+            this.direction = direction;
+            return this;
+        }
+
+        /**
+         * Filter by destination names.
+         *
+         * @param destinationNames Destination names.
+         * @return The builder.
+         */
+        public Builder forDestinationNames(final String... destinationNames) {
+            this.destinationNames = toSet(destinationNames);
+            return this;
+        }
+
+        /**
+         * Finally build the filter.
+         *
+         * @return The filter.
+         */
+        public TripFilter build() {
+            return new TripFilter(stopIDs, stopNames, lineIDs, lineNames, direction, destinationNames);
+        }
+    }
+}
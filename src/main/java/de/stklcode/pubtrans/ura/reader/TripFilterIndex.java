@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Trip;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Inverted index of values with {@link TripFilter}s, e.g. subscriptions of a {@link UraStreamHub}.
+ * <p>
+ * Each value is indexed by the most selective criterion of its filter: the stop IDs, if set, otherwise the line IDs,
+ * otherwise the direction. Values with none of these criteria are checked for every trip. Lookup only touches the
+ * values indexed under the trip's stop ID, line ID and direction, so the matching costs are proportional to the
+ * number of candidates rather than the total number of values. Candidates are verified against the full filter.
+ * <p>
+ * Values can be added and removed concurrently without blocking lookups.
+ *
+ * @param <V> Value type.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+final class TripFilterIndex<V> {
+    private final Function<? super V, TripFilter> filterFunction;
+    private final Map<String, Set<V>> byStop = new ConcurrentHashMap<>();
+    private final Map<String, Set<V>> byLine = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<V>> byDirection = new ConcurrentHashMap<>();
+    private final Set<V> unindexed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Initialize an empty index.
+     *
+     * @param filterFunction Function to get the filter of a value. Must return the same filter for each call.
+     */
+    TripFilterIndex(Function<? super V, TripFilter> filterFunction) {
+        this.filterFunction = filterFunction;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value The value.
+     */
+    void add(V value) {
+        TripFilter filter = filterFunction.apply(value);
+        if (!filter.stopIDs().isEmpty()) {
+            filter.stopIDs().forEach(id -> add(byStop, id, value));
+        } else if (!filter.lineIDs().isEmpty()) {
+            filter.lineIDs().forEach(id -> add(byLine, id, value));
+        } else if (filter.direction() != null) {
+            add(byDirection, filter.direction(), value);
+        } else {
+            unindexed.add(value);
+        }
+        size.incrementAndGet();
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param value The value.
+     * @return {@code true} if the value has been removed.
+     */
+    boolean remove(V value) {
+        TripFilter filter = filterFunction.apply(value);
+        boolean removed;
+        if (!filter.stopIDs().isEmpty()) {
+            removed = filter.stopIDs().stream().map(id -> remove(byStop, id, value)).reduce(false, Boolean::logicalOr);
+        } else if (!filter.lineIDs().isEmpty()) {
+            removed = filter.lineIDs().stream().map(id -> remove(byLine, id, value)).reduce(false, Boolean::logicalOr);
+        } else if (filter.direction() != null) {
+            removed = remove(byDirection, filter.direction(), value);
+        } else {
+            removed = unindexed.remove(value);
+        }
+
+        if (removed) {
+            size.decrementAndGet();
+        }
+        return removed;
+    }
+
+    /**
+     * Pass all values whose filter matches the given trip to the action.
+     *
+     * @param trip   The trip.
+     * @param action Action for each matching value.
+     */
+    void forEachMatch(Trip trip, Consumer<? super V> action) {
+        if (trip.stop() != null && trip.stop().id() != null) {
+            forEachMatch(byStop.get(trip.stop().id()), trip, action);
+        }
+        if (trip.lineID() != null) {
+            forEachMatch(byLine.get(trip.lineID()), trip, action);
+        }
+        forEachMatch(byDirection.get(trip.directionID()), trip, action);
+        forEachMatch(unindexed, trip, action);
+    }
+
+    /**
+     * Get the number of values.
+     *
+     * @return Number of values.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Remove all values.
+     */
+    void clear() {
+        byStop.clear();
+        byLine.clear();
+        byDirection.clear();
+        unindexed.clear();
+        size.set(0);
+    }
+
+    /**
+     * Verify the candidates against the full filter and pass matching values to the action.
+     *
+     * @param candidates Candidate values, might be {@code null}.
+     * @param trip       The trip.
+     * @param action     Action for each matching value.
+     */
+    private void forEachMatch(Set<V> candidates, Trip trip, Consumer<? super V> action) {
+        if (candidates == null) {
+            return;
+        }
+        for (V value : candidates) {
+            if (filterFunction.apply(value).test(trip)) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Add a value to the set of the given key.
+     *
+     * @param index The index map.
+     * @param key   The key.
+     * @param value The value.
+     * @param <K>   Key type.
+     * @param <E>   Value type.
+     */
+    private static <K, E> void add(Map<K, Set<E>> index, K key, E value) {
+        index.compute(key, (k, values) -> {
+            Set<E> set = values != null ? values : ConcurrentHashMap.newKeySet();
+            set.add(value);
+            return set;
+        });
+    }
+
+    /**
+     * Remove a value from the set of the given key and remove the set, if it becomes empty.
+     *
+     * @param index The index map.
+     * @param key   The key.
+     * @param value The value.
+     * @param <K>   Key type.
+     * @param <E>   Value type.
+     * @return {@code true} if the value has been removed.
+     */
+    private static <K, E> boolean remove(Map<K, Set<E>> index, K key, E value) {
+        boolean[] removed = {false};
+        index.computeIfPresent(key, (k, values) -> {
+            removed[0] = values.remove(value);
+            return values.isEmpty() ? null : values;
+        });
+        return removed[0];
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Trip;
+
+/**
+ * Key of a single prediction, i.e. a trip at a specific stop visit.
+ *
+ * @param id      Trip ID.
+ * @param visitID Visit ID.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+record TripKey(String id, int visitID) {
+    /**
+     * Get the key of a trip.
+     *
+     * @param trip The trip.
+     * @return The key.
+     */
+    static TripKey of(Trip trip) {
+        return new TripKey(trip.id(), trip.visitID());
+    }
+}
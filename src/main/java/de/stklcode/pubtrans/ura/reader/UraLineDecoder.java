@@ -0,0 +1,408 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Message;
+import de.stklcode.pubtrans.ura.model.Stop;
+import de.stklcode.pubtrans.ura.model.Trip;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Decoder for single lines of the URA API response.
+ * <p>
+ * Each line is a JSON array of the form {@code [type, field1, field2, ...]}. Instead of materializing an intermediate
+ * list of boxed values, this decoder walks the JSON token stream and passes the values directly to the model
+ * constructors. It validates the same field types as {@link Trip#of(java.util.List)} and its siblings.
+ * <p>
+ * The decoder remembers the API version and server time from the last {@code [4, version, timestamp]} line, so a
+ * single instance should be used per response. Instances are not thread-safe.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class UraLineDecoder {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int RES_TYPE_STOP = 0;
+    static final int RES_TYPE_PREDICTION = 1;
+    private static final int RES_TYPE_FLEX_MESSAGE = 2;
+    static final int RES_TYPE_URA_VERSION = 4;
+
+    private static final int F_STOP_NAME = 1;
+    static final int F_STOP_ID = 2;
+    private static final int F_INDICATOR = 3;
+    private static final int F_STATE = 4;
+    private static final int F_LATITUDE = 5;
+    private static final int F_LONGITUDE = 6;
+    private static final int F_VISIT_ID = 7;
+    static final int F_LINE_ID = 8;
+    private static final int F_LINE_NAME = 9;
+    private static final int F_DIRECTION_ID = 10;
+    private static final int F_DESTINATION_NAME = 11;
+    private static final int F_DESTINATION_TEXT = 12;
+    private static final int F_VEHICLE_ID = 13;
+    static final int F_TRIP_ID = 14;
+    private static final int F_ESTIMATED_TIME = 15;
+    private static final int F_MSG_UUID = 7;
+    private static final int F_MSG_TYPE = 8;
+    private static final int F_MSG_PRIORITY = 9;
+    private static final int F_MSG_TEXT = 10;
+
+    private String version;
+    private long timestamp;
+
+    /**
+     * Initialize a new decoder for a single response.
+     */
+    public UraLineDecoder() {
+        this.version = null;
+        this.timestamp = 0L;
+    }
+
+    /**
+     * Get the API version from the last version line, if any.
+     *
+     * @return The version or {@code null}.
+     */
+    public String version() {
+        return version;
+    }
+
+    /**
+     * Get the server time from the last version line, if any.
+     *
+     * @return Timestamp in milliseconds since epoch or {@code 0}, if no timestamp has been received.
+     * @since 3.0
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Decode a trip from a single line.
+     *
+     * @param line JSON line.
+     * @return The trip or {@code null}, if the line is not a prediction.
+     * @throws IOException Thrown on invalid line format.
+     */
+    public Trip decodeTrip(final String line) throws IOException {
+        try (JsonParser p = MAPPER.createParser(line)) {
+            return begin(p, RES_TYPE_PREDICTION) ? readTrip(p) : null;
+        }
+    }
+
+    /**
+     * Decode a trip from a single line given as UTF-8 bytes.
+     *
+     * @param buf Buffer containing the line.
+     * @param off Offset of the line within the buffer.
+     * @param len Length of the line.
+     * @return The trip or {@code null}, if the line is not a prediction.
+     * @throws IOException Thrown on invalid line format.
+     */
+    public Trip decodeTrip(final byte[] buf, final int off, final int len) throws IOException {
+        try (JsonParser p = MAPPER.createParser(buf, off, len)) {
+            return begin(p, RES_TYPE_PREDICTION) ? readTrip(p) : null;
+        }
+    }
+
+    /**
+     * Decode a stop from a single line.
+     *
+     * @param line JSON line.
+     * @return The stop or {@code null}, if the line is not a stop.
+     * @throws IOException Thrown on invalid line format.
+     */
+    public Stop decodeStop(final String line) throws IOException {
+        try (JsonParser p = MAPPER.createParser(line)) {
+            return begin(p, RES_TYPE_STOP) ? readStop(p) : null;
+        }
+    }
+
+    /**
+     * Decode a stop from a single line given as UTF-8 bytes.
+     *
+     * @param buf Buffer containing the line.
+     * @param off Offset of the line within the buffer.
+     * @param len Length of the line.
+     * @return The stop or {@code null}, if the line is not a stop.
+     * @throws IOException Thrown on invalid line format.
+     */
+    public Stop decodeStop(final byte[] buf, final int off, final int len) throws IOException {
+        try (JsonParser p = MAPPER.createParser(buf, off, len)) {
+            return begin(p, RES_TYPE_STOP) ? readStop(p) : null;
+        }
+    }
+
+    /**
+     * Decode a message from a single line.
+     *
+     * @param line JSON line.
+     * @return The message or {@code null}, if the line is not a flex message.
+     * @throws IOException Thrown on invalid line format.
+     */
+    public Message decodeMessage(final String line) throws IOException {
+        try (JsonParser p = MAPPER.createParser(line)) {
+            return begin(p, RES_TYPE_FLEX_MESSAGE) ? readMessage(p) : null;
+        }
+    }
+
+    /**
+     * Decode a message from a single line given as UTF-8 bytes.
+     *
+     * @param buf Buffer containing the line.
+     * @param off Offset of the line within the buffer.
+     * @param len Length of the line.
+     * @return The message or {@code null}, if the line is not a flex message.
+     * @throws IOException Thrown on invalid line format.
+     */
+    public Message decodeMessage(final byte[] buf, final int off, final int len) throws IOException {
+        try (JsonParser p = MAPPER.createParser(buf, off, len)) {
+            return begin(p, RES_TYPE_FLEX_MESSAGE) ? readMessage(p) : null;
+        }
+    }
+
+    /**
+     * Read the leading type field of a line.
+     * Version lines are consumed and stored.
+     *
+     * @param p            The parser.
+     * @param expectedType Expected response type.
+     * @return {@code true}, if the line is of expected type and the parser is positioned on the type field.
+     * @throws IOException Thrown on invalid line format.
+     */
+    private boolean begin(final JsonParser p, final int expectedType) throws IOException {
+        JsonToken t = p.nextToken();
+        if (t == null) {
+            // Empty line.
+            return false;
+        } else if (t != JsonToken.START_ARRAY) {
+            throw new IOException("Invalid line format, expected array, found " + t);
+        }
+
+        // Check if result exists and has correct response type.
+        if (p.nextToken() != JsonToken.VALUE_NUMBER_INT || p.getNumberType() != JsonParser.NumberType.INT) {
+            return false;
+        }
+
+        int type = p.getIntValue();
+        if (type == RES_TYPE_URA_VERSION) {
+            if (p.nextToken() != JsonToken.END_ARRAY) {
+                version = p.getString();
+                if (p.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+                    timestamp = p.getLongValue();
+                }
+            }
+            return false;
+        }
+
+        return type == expectedType;
+    }
+
+    /**
+     * Read stop fields 1 to 6.
+     *
+     * @param p The parser.
+     * @return The stop.
+     * @throws IOException Thrown on invalid line format.
+     */
+    private static Stop readStop(final JsonParser p) throws IOException {
+        String name = readString(p, F_STOP_NAME, false);
+        String id = readString(p, F_STOP_ID, false);
+        String indicator = readString(p, F_INDICATOR, true);
+        int state = readInt(p, F_STATE);
+        double latitude = readDouble(p, F_LATITUDE);
+        double longitude = readDouble(p, F_LONGITUDE);
+
+        return new Stop(id, name, indicator, state, latitude, longitude);
+    }
+
+    /**
+     * Read trip fields 1 to 15.
+     *
+     * @param p The parser.
+     * @return The trip.
+     * @throws IOException Thrown on invalid line format.
+     */
+    private static Trip readTrip(final JsonParser p) throws IOException {
+        Stop stop = readStop(p);
+        int visitID = readInt(p, F_VISIT_ID);
+        String lineID = readString(p, F_LINE_ID, false);
+        String lineName = readString(p, F_LINE_NAME, false);
+
+        int directionID;
+        JsonToken t = next(p);
+        if (t == JsonToken.VALUE_STRING) {                          // Also accept Strings (#2)
+            try {
+                directionID = Integer.parseInt(p.getString());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid direction " + p.getString(), e);
+            }
+        } else if (t == JsonToken.VALUE_NUMBER_INT && p.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+            long dir = p.getLongValue();
+            directionID = dir >= Integer.MIN_VALUE && dir <= Integer.MAX_VALUE ? (int) dir : -1;
+        } else {
+            throw typeError(F_DIRECTION_ID, t, "String/Long/Integer");
+        }
+        if (directionID < 0 || directionID > 2) {
+            throw new IOException("Direction out of range. Expected 1 or 2, found " + directionID);
+        }
+
+        String destinationName = readString(p, F_DESTINATION_NAME, false);
+        String destinationText = readString(p, F_DESTINATION_TEXT, false);
+        /* TFL and ASEAG deliver different types with the same API version, so this field is a little more tolerant */
+        String vehicleID = readId(p, F_VEHICLE_ID, true);
+        String id = readId(p, F_TRIP_ID, false);
+        long estimatedTime = readLong(p, F_ESTIMATED_TIME);
+
+        return new Trip(stop, id, visitID, lineID, lineName, directionID, destinationName, destinationText, estimatedTime, vehicleID);
+    }
+
+    /**
+     * Read message fields 1 to 10.
+     *
+     * @param p The parser.
+     * @return The message.
+     * @throws IOException Thrown on invalid line format.
+     */
+    private static Message readMessage(final JsonParser p) throws IOException {
+        Stop stop = readStop(p);
+        String uuid = readString(p, F_MSG_UUID, false);
+        int type = readInt(p, F_MSG_TYPE);
+        int priority = readInt(p, F_MSG_PRIORITY);
+        String text = readString(p, F_MSG_TEXT, false);
+
+        return new Message(stop, uuid, type, priority, text);
+    }
+
+    /**
+     * Advance to the next field.
+     *
+     * @param p The parser.
+     * @return The field token.
+     * @throws IOException Thrown if the array ends prematurely.
+     */
+    private static JsonToken next(final JsonParser p) throws IOException {
+        JsonToken t = p.nextToken();
+        if (t == null || t == JsonToken.END_ARRAY) {
+            throw new IOException("Invalid number of fields");
+        }
+        return t;
+    }
+
+    /**
+     * Read a string field.
+     *
+     * @param p        The parser.
+     * @param field    Field number.
+     * @param nullable Accept {@code null} values.
+     * @return The value.
+     * @throws IOException Thrown on unexpected type.
+     */
+    private static String readString(final JsonParser p, final int field, final boolean nullable) throws IOException {
+        JsonToken t = next(p);
+        if (t == JsonToken.VALUE_STRING) {
+            return p.getString();
+        } else if (nullable && t == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        throw typeError(field, t, "String");
+    }
+
+    /**
+     * Read an identifier field that might be delivered as string or number.
+     *
+     * @param p        The parser.
+     * @param field    Field number.
+     * @param nullable Accept {@code null} values.
+     * @return The value as string.
+     * @throws IOException Thrown on unexpected type.
+     */
+    private static String readId(final JsonParser p, final int field, final boolean nullable) throws IOException {
+        JsonToken t = next(p);
+        if (t == JsonToken.VALUE_STRING || t == JsonToken.VALUE_NUMBER_INT && p.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+            return p.getString();
+        } else if (nullable && t == JsonToken.VALUE_NULL) {   // Only fail of field is not NULL (#3).
+            return null;
+        }
+        throw typeError(field, t, "String/Integer/Long");
+    }
+
+    /**
+     * Read an integer field.
+     *
+     * @param p     The parser.
+     * @param field Field number.
+     * @return The value.
+     * @throws IOException Thrown on unexpected type.
+     */
+    private static int readInt(final JsonParser p, final int field) throws IOException {
+        JsonToken t = next(p);
+        if (t != JsonToken.VALUE_NUMBER_INT || p.getNumberType() != JsonParser.NumberType.INT) {
+            throw typeError(field, t, "Integer");
+        }
+        return p.getIntValue();
+    }
+
+    /**
+     * Read a long field.
+     *
+     * @param p     The parser.
+     * @param field Field number.
+     * @return The value.
+     * @throws IOException Thrown on unexpected type.
+     */
+    private static long readLong(final JsonParser p, final int field) throws IOException {
+        JsonToken t = next(p);
+        if (t != JsonToken.VALUE_NUMBER_INT || p.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+            throw typeError(field, t, "Long");
+        }
+        return p.getLongValue();
+    }
+
+    /**
+     * Read a floating point field.
+     *
+     * @param p     The parser.
+     * @param field Field number.
+     * @return The value.
+     * @throws IOException Thrown on unexpected type.
+     */
+    private static double readDouble(final JsonParser p, final int field) throws IOException {
+        JsonToken t = next(p);
+        if (t != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw typeError(field, t, "Double");
+        }
+        return p.getDoubleValue();
+    }
+
+    /**
+     * Generate exception for unmatched token type.
+     *
+     * @param field    Field number.
+     * @param actual   Actual token.
+     * @param expected Expected type.
+     * @return The Exception.
+     */
+    private static IOException typeError(final int field, final JsonToken actual, final String expected) {
+        return new IOException(String.format("Field %d not of expected type %s, found %s", field, expected, actual));
+    }
+}
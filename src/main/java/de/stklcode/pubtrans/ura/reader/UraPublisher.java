@@ -0,0 +1,316 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.exception.UraClientException;
+import tools.jackson.core.JacksonException;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reactive publisher for results of the URA instant or stream API.
+ * <p>
+ * Each subscription issues a new request. The response body is consumed chunk by chunk, only if there is outstanding
+ * demand and all previously received lines have been emitted. So a slow subscriber propagates backpressure down to
+ * the HTTP client and TCP flow control, while a single upstream chunk usually serves many items.
+ * <p>
+ * Errors are signaled as {@link UraClientException}.
+ *
+ * @param <T> Result type.
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class UraPublisher<T> implements Flow.Publisher<T> {
+    private final HttpClient httpClient;
+    private final HttpRequest request;
+    private final LineDecoder<T> lineDecoder;
+    private final String errorMessage;
+
+    /**
+     * Initialize the publisher.
+     *
+     * @param httpClient   HTTP client to use.
+     * @param request      Request to issue for each subscription.
+     * @param lineDecoder  Decoder function for the expected result type.
+     * @param errorMessage Message for exceptions raised while reading.
+     */
+    public UraPublisher(HttpClient httpClient, HttpRequest request, LineDecoder<T> lineDecoder, String errorMessage) {
+        this.httpClient = httpClient;
+        this.request = request;
+        this.lineDecoder = lineDecoder;
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber must not be null");
+
+        LineSubscription subscription = new LineSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+
+        httpClient.sendAsync(
+            request,
+            info -> info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromSubscriber(subscription)
+                : HttpResponse.BodySubscribers.replacing(null)
+        ).whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                subscription.onError(throwable);
+            } else if (response.statusCode() != 200) {
+                subscription.onError(new IOException("API request failed with status " + response.statusCode()));
+            }
+        });
+    }
+
+    /**
+     * Subscription that bridges the HTTP body chunks to the downstream subscriber.
+     * <p>
+     * All downstream signals are emitted from a serialized drain loop.
+     */
+    private final class LineSubscription implements Flow.Subscription, Flow.Subscriber<List<ByteBuffer>> {
+        private final Flow.Subscriber<? super T> downstream;
+        private final LineFramer framer = new LineFramer();
+        private final UraLineDecoder decoder = new UraLineDecoder();
+        private final Queue<List<ByteBuffer>> chunks = new ConcurrentLinkedQueue<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile Flow.Subscription upstream;
+        private volatile boolean upstreamPending;
+        private volatile boolean upstreamDone;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private boolean done;
+        private T lookahead;
+
+        /**
+         * Initialize the subscription.
+         *
+         * @param downstream Downstream subscriber.
+         */
+        private LineSubscription(Flow.Subscriber<? super T> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("non-positive subscription request: " + n);
+            } else {
+                long r;
+                long u;
+                do {
+                    r = requested.get();
+                    u = r + n < 0 ? Long.MAX_VALUE : r + n;
+                } while (!requested.compareAndSet(r, u));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelUpstream();
+            drain();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            upstream = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            }
+            drain();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            chunks.add(item);
+            upstreamPending = false;
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (error == null) {
+                error = throwable;
+            }
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        /**
+         * Emit as many items as possible and request more data from upstream, if required.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                if (!done) {
+                    drainLoop();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Single iteration of the drain loop. Must only be called from {@link #drain()}.
+         */
+        private void drainLoop() {
+            while (true) {
+                if (cancelled) {
+                    done = true;
+                    lookahead = null;
+                    chunks.clear();
+                    return;
+                }
+
+                Throwable e = error;
+                if (e != null) {
+                    fail(e);
+                    return;
+                }
+
+                boolean d = upstreamDone;
+                if (requested.get() == 0 && (!d || lookahead != null)) {
+                    break;
+                }
+
+                // Completion is signaled without demand, so decode ahead once the response has been received.
+                T item;
+                try {
+                    item = next(d);
+                } catch (IOException | JacksonException ex) {
+                    fail(ex);
+                    return;
+                }
+
+                if (item == null) {
+                    if (d) {
+                        done = true;
+                        downstream.onComplete();
+                        return;
+                    }
+                    break;
+                } else if (requested.get() == 0) {
+                    lookahead = item;
+                    break;
+                }
+
+                downstream.onNext(item);
+                if (requested.get() != Long.MAX_VALUE) {
+                    requested.decrementAndGet();
+                }
+            }
+
+            // All buffered lines are emitted, request the next chunk, if there is demand left.
+            Flow.Subscription s = upstream;
+            if (s != null && !upstreamDone && !upstreamPending && chunks.isEmpty() && requested.get() > 0) {
+                upstreamPending = true;
+                s.request(1);
+            }
+        }
+
+        /**
+         * Get the next item, either decoded ahead or from buffered data.
+         *
+         * @param d Whether the upstream has completed, so a trailing line without line break is processed.
+         * @return Next item or {@code null}, if more data is required or the response has been read completely.
+         * @throws IOException Thrown on invalid line format.
+         */
+        private T next(boolean d) throws IOException {
+            T item = lookahead;
+            if (item != null) {
+                lookahead = null;
+                return item;
+            }
+
+            item = poll();
+            if (item == null && d) {
+                framer.finish();
+                item = poll();
+            }
+            return item;
+        }
+
+        /**
+         * Decode the next item from buffered data.
+         *
+         * @return Next item or {@code null}, if more data is required.
+         * @throws IOException Thrown on invalid line format.
+         */
+        private T poll() throws IOException {
+            while (true) {
+                while (framer.next()) {
+                    T item = lineDecoder.decode(decoder, framer.buffer(), framer.offset(), framer.length());
+                    if (item != null) {
+                        return item;
+                    }
+                }
+
+                List<ByteBuffer> chunk = chunks.poll();
+                if (chunk == null) {
+                    return null;
+                }
+                chunk.forEach(framer::feed);
+            }
+        }
+
+        /**
+         * Terminate with error and cancel the upstream.
+         *
+         * @param e The error.
+         */
+        private void fail(Throwable e) {
+            done = true;
+            lookahead = null;
+            chunks.clear();
+            cancelUpstream();
+            downstream.onError(e instanceof UraClientException || e instanceof IllegalArgumentException
+                ? e
+                : new UraClientException(errorMessage, e));
+        }
+
+        /**
+         * Cancel the upstream subscription, if present.
+         */
+        private void cancelUpstream() {
+            Flow.Subscription s = upstream;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+    }
+}
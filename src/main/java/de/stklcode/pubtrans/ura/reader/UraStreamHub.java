@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.UraClientConfiguration;
+import de.stklcode.pubtrans.ura.model.Trip;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Hub that shares a single stream connection among multiple local subscribers.
+ * <p>
+ * The hub reads a broad upstream query, e.g. all stops of an area, and routes each trip to all subscribers whose
+ * {@link TripFilter} matches. Subscribers can join and leave at any time without reconnecting the upstream.
+ * The upstream connection is opened with the first subscription and kept open until the hub is closed.
+ * <p>
+ * Subscriptions are held in an inverted index by stop ID, line ID and direction, so routing a trip only evaluates the
+ * filters of candidate subscriptions instead of all of them.
+ * <p>
+ * Subscribers are invoked sequentially on the thread that reads the stream, so slow subscribers should be wrapped in
+ * a {@link QueuedConsumer}. If a parse parallelism is configured, subscribers are invoked concurrently from the
+ * decoding threads instead. Each subscriber still receives the predictions of a trip in order, but it must be
+ * thread-safe. A {@link RingBufferConsumer} is rejected in this case, unless it is wrapped in a {@link QueuedConsumer}.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public class UraStreamHub implements AutoCloseable {
+    private final AsyncUraTripReader reader;
+    private final TripFilterIndex<Subscription> subscriptions = new TripFilterIndex<>(Subscription::filter);
+    private boolean opened;
+
+    /**
+     * Initialize the hub.
+     *
+     * @param uri        Stream URL of the upstream query.
+     * @param config     Client configuration for additional parameters.
+     * @param httpClient HTTP client to use. If {@code null}, a new client is created.
+     */
+    public UraStreamHub(URI uri, UraClientConfiguration config, HttpClient httpClient) {
+        this.reader = new AsyncUraTripReader(uri, config, httpClient, Collections.singletonList(this::dispatch));
+    }
+
+    /**
+     * Subscribe to trips matching the given filter.
+     *
+     * @param filter   Trip filter.
+     * @param consumer Consumer for matching trips.
+     * @return Subscription handle, close it to unsubscribe.
+     * @throws IllegalArgumentException Consumer cannot be invoked concurrently, but a parse parallelism is configured.
+     */
+    public Subscription subscribe(TripFilter filter, Consumer<Trip> consumer) {
+        reader.checkConsumer(consumer);
+        Subscription subscription = new Subscription(
+            Objects.requireNonNull(filter, "filter must not be null"),
+            Objects.requireNonNull(consumer, "consumer must not be null")
+        );
+        subscriptions.add(subscription);
+
+        synchronized (this) {
+            if (!opened) {
+                reader.open();
+                opened = true;
+            }
+        }
+
+        return subscription;
+    }
+
+    /**
+     * Get the number of active subscriptions.
+     *
+     * @return Number of subscriptions.
+     */
+    public int subscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Get the upstream reader, e.g. to register reconnect or error listeners.
+     *
+     * @return The reader.
+     */
+    public AsyncUraTripReader reader() {
+        return reader;
+    }
+
+    /**
+     * Pass a trip to all matching subscribers.
+     *
+     * @param trip The trip.
+     */
+    private void dispatch(Trip trip) {
+        subscriptions.forEachMatch(trip, subscription -> subscription.consumer.accept(trip));
+    }
+
+    /**
+     * Close the hub, i.e. the upstream connection.
+     * Subscriptions are removed.
+     */
+    @Override
+    public synchronized void close() {
+        subscriptions.clear();
+        if (opened) {
+            opened = false;
+            reader.close();
+        }
+    }
+
+    /**
+     * Subscription of a local consumer.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final TripFilter filter;
+        private final Consumer<Trip> consumer;
+
+        /**
+         * Initialize the subscription.
+         *
+         * @param filter   Trip filter.
+         * @param consumer Consumer for matching trips.
+         */
+        private Subscription(TripFilter filter, Consumer<Trip> consumer) {
+            this.filter = filter;
+            this.consumer = consumer;
+        }
+
+        /**
+         * Get the trip filter.
+         *
+         * @return The filter.
+         */
+        public TripFilter filter() {
+            return filter;
+        }
+
+        /**
+         * Unsubscribe, i.e. stop passing trips to the consumer.
+         */
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+}
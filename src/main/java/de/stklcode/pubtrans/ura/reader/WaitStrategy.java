@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategy for threads waiting on a {@link RingBufferConsumer}, i.e. consumers waiting for new items and the producer
+ * waiting for free slots.
+ *
+ * @author Stefan Kalscheuer
+ * @since 3.0
+ */
+public enum WaitStrategy {
+    /**
+     * Spin on the CPU. Lowest latency, but occupies a core per waiting thread.
+     */
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    /**
+     * Spin for a short period, then yield the CPU to other threads.
+     */
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    /**
+     * Spin and yield for a short period, then park the thread for increasing intervals up to 1 millisecond.
+     * Slowest reaction, but lowest CPU usage for idle streams.
+     */
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (attempt < SPIN_TRIES * 2) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(1000L << Math.min(attempt - SPIN_TRIES * 2, 10), MAX_PARK_NANOS));
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final long MAX_PARK_NANOS = 1_000_000L;
+
+    /**
+     * Wait once.
+     *
+     * @param attempt Number of unsuccessful attempts so far, starting at 0.
+     */
+    abstract void idle(int attempt);
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016-2024 Stefan Kalscheuer
+ * Copyright 2016-2026 Stefan Kalscheuer
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,6 @@ module de.stklcode.pubtrans.juraclient {
     exports de.stklcode.pubtrans.ura.reader;
 
     requires java.base;
-    requires java.net.http;
+    requires transitive java.net.http;
     requires tools.jackson.databind;
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link RequestCoalescer}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class RequestCoalescerTest {
+    @Test
+    void loadTest() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        List<String> result = List.of("a", "b");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // The first caller blocks inside the loader, all others join the pending request.
+            List<Future<List<String>>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> coalescer.load("url", () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                release.join();
+                return result;
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS), "Loader not started");
+            for (int i = 0; i < 7; i++) {
+                futures.add(executor.submit(() -> coalescer.load("url", () -> {
+                    loads.incrementAndGet();
+                    return List.of();
+                })));
+            }
+            CompletableFuture<List<String>> async = coalescer.loadAsync("url", () -> {
+                loads.incrementAndGet();
+                return CompletableFuture.completedFuture(List.of());
+            });
+            assertFalse(async.isDone(), "Async request should wait for pending request");
+            assertEquals(1, coalescer.size(), "Expected one request in flight");
+
+            // Release the first request only after all followers have joined it.
+            for (int i = 0; i < 500 && coalescer.waiting("url") < 8; i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(8, coalescer.waiting("url"), "All followers should wait for the pending request");
+
+            release.complete(null);
+            for (Future<List<String>> future : futures) {
+                assertSame(result, future.get(5, TimeUnit.SECONDS), "Shared result expected");
+            }
+            assertSame(result, async.get(5, TimeUnit.SECONDS), "Shared result expected for async request");
+            assertEquals(1, loads.get(), "Loader should be invoked only once");
+            assertEquals(0, coalescer.size(), "No request should be in flight");
+
+            // Subsequent requests load again.
+            assertEquals(List.of(), coalescer.load("url", List::of), "New request expected after completion");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void errorTest() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<List<String>> pending = new CompletableFuture<>();
+
+        // Errors of the pending request are passed to all callers.
+        CompletableFuture<List<String>> first = coalescer.loadAsync("url", () -> pending);
+        CompletableFuture<List<String>> second = coalescer.loadAsync("url", CompletableFuture::new);
+        assertFalse(second.isDone(), "Second request should wait for pending request");
+        pending.completeExceptionally(new IOException("failed"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, first::get, "First request should fail");
+        assertEquals("failed", e.getCause().getMessage(), "Unexpected error");
+        e = assertThrows(ExecutionException.class, second::get, "Second request should fail");
+        assertEquals("failed", e.getCause().getMessage(), "Unexpected error");
+        assertEquals(0, coalescer.size(), "Failed request should be removed");
+
+        IOException ioe = assertThrows(
+            IOException.class,
+            () -> coalescer.load("url", () -> {
+                throw new IOException("sync failed");
+            }),
+            "Synchronous request should fail"
+        );
+        assertEquals("sync failed", ioe.getMessage(), "Unexpected error");
+        assertEquals(0, coalescer.size(), "Failed request should be removed");
+
+        // Errors are passed to waiting callers as well.
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<String>> failing = executor.submit(() -> coalescer.<String>load("url", () -> {
+                started.countDown();
+                release.join();
+                throw new AssertionError("error");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS), "Loader not started");
+            CompletableFuture<List<String>> waiting = coalescer.loadAsync("url", CompletableFuture::new);
+            release.complete(null);
+
+            e = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS), "Request should fail");
+            assertInstanceOf(AssertionError.class, e.getCause(), "Unexpected error");
+            e = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS), "Waiting request should fail");
+            assertInstanceOf(AssertionError.class, e.getCause(), "Unexpected error for waiting request");
+            assertEquals(0, coalescer.size(), "Failed request should be removed");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
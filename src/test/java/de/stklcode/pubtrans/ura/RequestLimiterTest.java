@@ -0,0 +1,288 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura;
+
+import de.stklcode.pubtrans.ura.exception.UraClientException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link RequestLimiter}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class RequestLimiterTest {
+    @Test
+    void rateTest() throws IOException {
+        TestClock clock = new TestClock();
+        RequestLimiter limiter = RequestLimiter.builder()
+            .withRate(2.0)
+            .withBurst(2)
+            .withMaxWait(Duration.ZERO)
+            .withClock(clock)
+            .build();
+
+        // Burst is available immediately, further requests fail fast.
+        limiter.acquire().release(true);
+        limiter.acquire().release(true);
+        UraClientException e = assertThrows(UraClientException.class, limiter::acquire, "Rate limit not applied");
+        assertEquals("Request limit exceeded", e.getMessage(), "Unexpected error message");
+        assertEquals(1, limiter.rejected(), "Unexpected number of rejected requests");
+
+        // Tokens are refilled at the configured rate.
+        clock.millis = 500;
+        limiter.acquire().release(true);
+        assertThrows(UraClientException.class, limiter::acquire, "Only one token should be refilled");
+
+        // Refill is capped at the burst size.
+        clock.millis = 10000;
+        limiter.acquire().release(true);
+        limiter.acquire().release(true);
+        assertThrows(UraClientException.class, limiter::acquire, "Burst size exceeded");
+        assertEquals(3, limiter.rejected(), "Unexpected number of rejected requests");
+    }
+
+    @Test
+    void concurrencyTest() throws IOException {
+        TestClock clock = new TestClock();
+        RequestLimiter limiter = RequestLimiter.builder()
+            .withRate(1000.0)
+            .withBurst(1000)
+            .withConcurrency(2, 1, 3)
+            .withLatencyThreshold(Duration.ofMillis(100))
+            .withMaxWait(Duration.ZERO)
+            .withClock(clock)
+            .build();
+
+        RequestLimiter.Permit p1 = limiter.acquire();
+        RequestLimiter.Permit p2 = limiter.acquire();
+        assertEquals(2, limiter.inFlight(), "Unexpected number of requests in flight");
+        assertThrows(UraClientException.class, limiter::acquire, "Concurrency limit not applied");
+
+        p1.release(true);
+        p2.release(true);
+        p2.release(true);
+        assertEquals(0, limiter.inFlight(), "Permit should only be released once");
+
+        // Limit is not increased, if not used.
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire().release(true);
+        }
+        assertEquals(2, limiter.limit(), "Limit should not grow if not used");
+
+        // Successful requests at the limit increase it additively.
+        for (int i = 0; i < 2; i++) {
+            p1 = limiter.acquire();
+            p2 = limiter.acquire();
+            p1.release(true);
+            p2.release(true);
+        }
+        assertEquals(3, limiter.limit(), "Limit should grow with successful requests");
+        for (int i = 0; i < 10; i++) {
+            RequestLimiter.Permit[] permits = {limiter.acquire(), limiter.acquire(), limiter.acquire()};
+            for (RequestLimiter.Permit p : permits) {
+                p.release(true);
+            }
+        }
+        assertEquals(3, limiter.limit(), "Limit should not exceed maximum");
+
+        // Failed and slow requests decrease it multiplicatively.
+        limiter.acquire().release(false);
+        assertEquals(2, limiter.limit(), "Limit should decrease on failure");
+        p1 = limiter.acquire();
+        clock.millis = 200;
+        p1.release(true);
+        assertEquals(2, limiter.limit(), "Limit should decrease on slow request");
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire().release(false);
+        }
+        assertEquals(1, limiter.limit(), "Limit should not fall below minimum");
+
+        // Cancelled permits do not change the limit.
+        limiter.acquire().cancel();
+        assertEquals(1, limiter.limit(), "Cancelled permit should not change the limit");
+        assertEquals(0, limiter.inFlight(), "Cancelled permit should be released");
+    }
+
+    @Test
+    void waitTest() throws Exception {
+        RequestLimiter limiter = RequestLimiter.builder()
+            .withRate(1000.0)
+            .withBurst(1000)
+            .withConcurrency(1, 1, 1)
+            .build();
+
+        // Requests wait for a free slot in order.
+        RequestLimiter.Permit permit = limiter.acquire();
+        CompletableFuture<RequestLimiter.Permit> first = limiter.acquireAsync();
+        CompletableFuture<RequestLimiter.Permit> second = limiter.acquireAsync();
+        assertFalse(first.isDone(), "Request should wait for a free slot");
+        assertEquals(2, limiter.waiting(), "Unexpected number of waiting requests");
+
+        permit.release(true);
+        first.get(5, TimeUnit.SECONDS).release(true);
+        second.get(5, TimeUnit.SECONDS).release(true);
+        assertEquals(0, limiter.waiting(), "No requests should wait");
+        assertEquals(0, limiter.inFlight(), "No requests should be in flight");
+
+        // Requests wait for the next token.
+        RequestLimiter rateLimiter = RequestLimiter.builder().withRate(20.0).withBurst(1).build();
+        rateLimiter.acquire().release(true);
+        long start = System.nanoTime();
+        rateLimiter.acquire().release(true);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40), "Request should wait for a token");
+    }
+
+    @Test
+    void interruptTest() throws Exception {
+        RequestLimiter limiter = RequestLimiter.builder()
+            .withRate(1000000.0)
+            .withBurst(1000000)
+            .withConcurrency(1, 1, 1)
+            .build();
+
+        // Interrupt waiting requests while the permit is granted, so either side may win.
+        for (int i = 0; i < 200; i++) {
+            RequestLimiter.Permit permit = limiter.acquire();
+            Thread waiting = new Thread(() -> {
+                try {
+                    limiter.acquire().release(true);
+                } catch (IOException e) {
+                    // Interrupted before the permit was granted.
+                }
+            });
+            waiting.start();
+            while (limiter.waiting() == 0 && waiting.isAlive()) {
+                Thread.onSpinWait();
+            }
+
+            Thread releasing = new Thread(() -> permit.release(true));
+            releasing.start();
+            waiting.interrupt();
+            releasing.join(5000);
+            waiting.join(5000);
+            assertFalse(waiting.isAlive(), "Waiting request should terminate");
+            assertEquals(0, limiter.inFlight(), "Permit granted to an interrupted request should be released");
+        }
+    }
+
+    @Test
+    void deadlineTest() throws Exception {
+        RequestLimiter limiter = RequestLimiter.builder()
+            .withConcurrency(1, 1, 1)
+            .withMaxWait(Duration.ofMillis(50))
+            .build();
+
+        RequestLimiter.Permit permit = limiter.acquire();
+        CompletableFuture<RequestLimiter.Permit> waiting = limiter.acquireAsync();
+        ExecutionException e = assertThrows(
+            ExecutionException.class,
+            () -> waiting.get(5, TimeUnit.SECONDS),
+            "Request should fail after the deadline"
+        );
+        assertInstanceOf(UraClientException.class, e.getCause(), "Unexpected error");
+        assertEquals(1, limiter.rejected(), "Unexpected number of rejected requests");
+        assertEquals(0, limiter.waiting(), "Expired request should be removed");
+
+        // Released slots are available again.
+        permit.release(true);
+        limiter.acquire().release(true);
+    }
+
+    @Test
+    void bodyTest() throws IOException {
+        RequestLimiter limiter = RequestLimiter.builder().withConcurrency(2, 1, 2).build();
+
+        // Permit is held until the body has been read completely.
+        InputStream body = limiter.acquire().releaseOnClose(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        assertEquals(1, limiter.inFlight(), "Permit should be held while reading the body");
+        assertEquals(3, body.read(new byte[3], 0, 3), "Unexpected number of bytes");
+        assertEquals(1, limiter.inFlight(), "Permit should be held until the end of the body");
+        assertEquals(-1, body.read(), "End of body expected");
+        assertEquals(0, limiter.inFlight(), "Permit should be released at the end of the body");
+        body.close();
+        assertEquals(0, limiter.inFlight(), "Permit should only be released once");
+
+        // Closing the body releases the permit.
+        body = limiter.acquire().releaseOnClose(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        assertEquals(1, body.read(), "Unexpected byte");
+        body.close();
+        assertEquals(0, limiter.inFlight(), "Permit should be released when the body is closed");
+        assertEquals(2, limiter.limit(), "Closed body should not change the limit");
+
+        // Read errors count as failure.
+        body = limiter.acquire().releaseOnClose(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        });
+        assertThrows(IOException.class, body::read, "Read error expected");
+        assertEquals(0, limiter.inFlight(), "Permit should be released on read error");
+        assertEquals(1, limiter.limit(), "Read error should decrease the limit");
+    }
+
+    @Test
+    void builderTest() {
+        assertThrows(IllegalArgumentException.class, () -> RequestLimiter.builder().withRate(0.0).build(),
+            "Zero rate should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> RequestLimiter.builder().withConcurrency(5, 10, 20).build(),
+            "Initial limit below minimum should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> RequestLimiter.builder().withBackoff(1.0).build(),
+            "Backoff of 1 should be rejected");
+        assertThrows(IllegalArgumentException.class,
+            () -> RequestLimiter.builder().withMaxWait(Duration.ofSeconds(-1)).build(),
+            "Negative wait time should be rejected");
+    }
+
+    private static final class TestClock extends Clock {
+        private long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura;
+
+import de.stklcode.pubtrans.ura.model.Message;
+import de.stklcode.pubtrans.ura.model.Stop;
+import de.stklcode.pubtrans.ura.model.Trip;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link ResponseCache}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class ResponseCacheTest {
+    @Test
+    void ttlTest() {
+        TestClock clock = new TestClock();
+        ResponseCache cache = ResponseCache.builder()
+            .withTripTtl(Duration.ofSeconds(10))
+            .withStopTtl(Duration.ofHours(1))
+            .withMessageTtl(Duration.ZERO)
+            .withClock(clock)
+            .build();
+
+        assertNull(cache.get("trips"), "Empty cache should not return results");
+        cache.put("trips", Trip.class, List.of("trip"));
+        cache.put("stops", Stop.class, List.of("stop"));
+        cache.put("messages", Message.class, List.of("message"));
+        assertEquals(2, cache.size(), "Messages should not be cached without time-to-live");
+
+        clock.millis = 9999;
+        assertEquals(List.of("trip"), cache.get("trips"), "Trips should be cached");
+        assertEquals(List.of("stop"), cache.get("stops"), "Stops should be cached");
+        assertNull(cache.get("messages"), "Messages should not be cached");
+
+        // Trips expire after 10 seconds, stops are still valid.
+        clock.millis = 10000;
+        assertNull(cache.get("trips"), "Trips should be expired");
+        assertEquals(List.of("stop"), cache.get("stops"), "Stops should still be cached");
+        assertEquals(1, cache.size(), "Expired entry should be removed");
+
+        assertEquals(3, cache.hits(), "Unexpected number of hits");
+        assertEquals(3, cache.misses(), "Unexpected number of misses");
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size(), "Cache should be empty after invalidation");
+    }
+
+    @Test
+    void evictionTest() {
+        ResponseCache cache = ResponseCache.builder().withMaximumSize(2).build();
+        cache.put("a", Stop.class, List.of("a"));
+        cache.put("b", Stop.class, List.of("b"));
+
+        // Access the first entry, so the second is the least recently used.
+        assertNotNull(cache.get("a"), "Entry a should be cached");
+        cache.put("c", Stop.class, List.of("c"));
+        assertEquals(2, cache.size(), "Size limit exceeded");
+        assertEquals(1, cache.evictions(), "Unexpected number of evictions");
+        assertNotNull(cache.get("a"), "Recently used entry a should be retained");
+        assertNull(cache.get("b"), "Least recently used entry b should be evicted");
+        assertNotNull(cache.get("c"), "Entry c should be cached");
+    }
+
+    @Test
+    void builderTest() {
+        assertThrows(IllegalArgumentException.class, () -> ResponseCache.builder().withMaximumSize(0).build(),
+            "Zero size should be rejected");
+        assertThrows(IllegalArgumentException.class,
+            () -> ResponseCache.builder().withTripTtl(Duration.ofSeconds(-1)).build(),
+            "Negative time-to-live should be rejected");
+        assertThrows(NullPointerException.class, () -> ResponseCache.builder().withStopTtl(null).build(),
+            "Missing time-to-live should be rejected");
+    }
+
+    @Test
+    void serializationTest() throws IOException, ClassNotFoundException {
+        ResponseCache cache = ResponseCache.builder().withMaximumSize(1).build();
+        cache.put("a", Stop.class, List.of("a"));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(cache);
+        }
+        ResponseCache copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            copy = (ResponseCache) in.readObject();
+        }
+
+        assertEquals(0, copy.size(), "Deserialized cache should be empty");
+        copy.put("a", Stop.class, List.of("a"));
+        copy.put("b", Stop.class, List.of("b"));
+        assertEquals(1, copy.size(), "Size limit should be retained");
+    }
+
+    private static final class TestClock extends Clock {
+        private long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import de.stklcode.pubtrans.ura.exception.UraClientException;
+import de.stklcode.pubtrans.ura.model.Trip;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link TripBatcher}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class TripBatcherTest {
+    @RegisterExtension
+    static WireMockExtension wireMock = WireMockExtension.newInstance()
+        .options(wireMockConfig().dynamicPort())
+        .build();
+
+    @Test
+    void batchTest() throws Exception {
+        wireMock.stubFor(
+            get(urlPathEqualTo("/interfaces/ura/instant_V1")).willReturn(
+                aResponse().withBodyFile("instant_V1_trips_all.txt")
+            )
+        );
+
+        UraClient uraClient = new UraClient(wireMock.baseUrl());
+        try (TripBatcher batcher = TripBatcher.forClient(uraClient).withWindow(Duration.ofSeconds(10)).build()) {
+            // Requests within the window are merged, the batch is sent on flush.
+            CompletableFuture<List<Trip>> f1 = batcher.getTrips("100001");
+            CompletableFuture<List<Trip>> f2 = batcher.getTrips("100002");
+            CompletableFuture<List<Trip>> f3 = batcher.getTrips("100001");
+            CompletableFuture<List<Trip>> f4 = batcher.getTrips("999999");
+            assertFalse(f1.isDone(), "Batch should not be sent before the window has elapsed");
+            batcher.flush();
+
+            List<Trip> trips = f1.get(10, TimeUnit.SECONDS);
+            assertEquals(1, trips.size(), "Unexpected number of trips for stop 100001");
+            assertEquals("Elisenbrunnen", trips.get(0).stop().name(), "Unexpected stop");
+            assertEquals(trips, f3.get(10, TimeUnit.SECONDS), "Identical stops should share the result");
+            trips = f2.get(10, TimeUnit.SECONDS);
+            assertEquals(1, trips.size(), "Unexpected number of trips for stop 100002");
+            assertEquals("Hansemannplatz", trips.get(0).stop().name(), "Unexpected stop");
+            assertTrue(f4.get(10, TimeUnit.SECONDS).isEmpty(), "No trips expected for unknown stop");
+
+            wireMock.verify(1, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1"))
+                .withQueryParam("StopID", equalTo("100001,100002,999999")));
+            assertEquals(1, batcher.batches(), "Unexpected number of batches");
+            assertEquals(4, batcher.requests(), "Unexpected number of requests");
+        }
+    }
+
+    @Test
+    void triggerTest() throws Exception {
+        wireMock.stubFor(
+            get(urlPathEqualTo("/interfaces/ura/instant_V1")).willReturn(
+                aResponse().withBodyFile("instant_V1_trips_all.txt")
+            )
+        );
+
+        UraClient uraClient = new UraClient(wireMock.baseUrl());
+        TripBatcher batcher = TripBatcher.forClient(uraClient)
+            .withWindow(Duration.ofMillis(50))
+            .withMaxStops(2)
+            .build();
+
+        // Batch is sent when the maximum number of stops is reached.
+        CompletableFuture<List<Trip>> f1 = batcher.getTrips("100001");
+        CompletableFuture<List<Trip>> f2 = batcher.getTrips("100002");
+        assertEquals(1, batcher.batches(), "Full batch should be sent immediately");
+        assertEquals(1, f1.get(10, TimeUnit.SECONDS).size(), "Unexpected number of trips for stop 100001");
+        assertEquals(1, f2.get(10, TimeUnit.SECONDS).size(), "Unexpected number of trips for stop 100002");
+
+        // Batch is sent after the window has elapsed.
+        CompletableFuture<List<Trip>> f3 = batcher.getTrips("100322");
+        assertEquals(1, f3.get(10, TimeUnit.SECONDS).size(), "Unexpected number of trips for stop 100322");
+        assertEquals(2, batcher.batches(), "Batch should be sent after the window");
+
+        // Requests after closing are rejected.
+        batcher.close();
+        ExecutionException e = assertThrows(
+            ExecutionException.class,
+            () -> batcher.getTrips("100001").get(),
+            "Request after closing should fail"
+        );
+        assertInstanceOf(IllegalStateException.class, e.getCause(), "Unexpected error");
+    }
+
+    @Test
+    void errorTest() {
+        wireMock.stubFor(get(anyUrl()).willReturn(aResponse().withStatus(503)));
+
+        UraClient uraClient = new UraClient(wireMock.baseUrl());
+        try (TripBatcher batcher = TripBatcher.forClient(uraClient).build()) {
+            CompletableFuture<List<Trip>> f1 = batcher.getTrips("100001");
+            CompletableFuture<List<Trip>> f2 = batcher.getTrips("100002");
+            batcher.flush();
+
+            for (CompletableFuture<List<Trip>> future : List.of(f1, f2)) {
+                ExecutionException e = assertThrows(
+                    ExecutionException.class,
+                    () -> future.get(10, TimeUnit.SECONDS),
+                    "Failed batch should fail all requests"
+                );
+                assertInstanceOf(UraClientException.class, e.getCause(), "Unexpected error");
+            }
+        }
+    }
+
+    @Test
+    void failureTest() {
+        // Client failing synchronously.
+        UraClient failing = new UraClient(wireMock.baseUrl()) {
+            @Override
+            public CompletableFuture<List<Trip>> getTripsAsync(final Query query) {
+                throw new IllegalStateException("broken");
+            }
+        };
+        assertBatchFails(failing, IllegalStateException.class);
+
+        // Response that cannot be dispatched.
+        UraClient invalid = new UraClient(wireMock.baseUrl()) {
+            @Override
+            public CompletableFuture<List<Trip>> getTripsAsync(final Query query) {
+                return CompletableFuture.completedFuture(Collections.singletonList(null));
+            }
+        };
+        assertBatchFails(invalid, NullPointerException.class);
+    }
+
+    /**
+     * Request two stops and verify that both futures fail with a {@link UraClientException}.
+     *
+     * @param uraClient Client to use.
+     * @param cause     Expected type of the cause.
+     */
+    private static void assertBatchFails(UraClient uraClient, Class<? extends Throwable> cause) {
+        try (TripBatcher batcher = TripBatcher.forClient(uraClient).build()) {
+            CompletableFuture<List<Trip>> f1 = batcher.getTrips("100001");
+            CompletableFuture<List<Trip>> f2 = batcher.getTrips("100002");
+            batcher.flush();
+
+            for (CompletableFuture<List<Trip>> future : List.of(f1, f2)) {
+                ExecutionException e = assertThrows(
+                    ExecutionException.class,
+                    () -> future.get(10, TimeUnit.SECONDS),
+                    "Failed batch should fail all requests"
+                );
+                assertInstanceOf(UraClientException.class, e.getCause(), "Unexpected error");
+                assertInstanceOf(cause, e.getCause().getCause(), "Unexpected cause");
+            }
+        }
+    }
+}
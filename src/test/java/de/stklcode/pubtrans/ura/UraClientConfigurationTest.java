@@ -16,12 +16,14 @@
 
 package de.stklcode.pubtrans.ura;
 
+import de.stklcode.pubtrans.ura.reader.ReconnectPolicy;
 import org.junit.jupiter.api.Test;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.Executor;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Unit test for {@link UraClientConfiguration}.
@@ -44,6 +46,16 @@ class UraClientConfigurationTest {
         assertEquals("/interfaces/ura/stream_V1", config.streamPath(), "Unexpected default stream path");
         assertNull(config.connectTimeout(), "No default connection timeout expected");
         assertNull(config.timeout(), "No default timeout expected");
+        assertNull(config.httpVersion(), "No default HTTP version expected");
+        assertNull(config.executor(), "No default executor expected");
+        assertTrue(config.connectionReuse(), "Connection reuse should be enabled by default");
+        assertNull(config.reconnectPolicy(), "No default reconnect policy expected");
+        assertNull(config.idleTimeout(), "No default idle timeout expected");
+        assertEquals(0, config.parseParallelism(), "Parallel parsing should be disabled by default");
+        assertNull(config.responseCache(), "No default response cache expected");
+        assertFalse(config.requestCoalescing(), "Request coalescing should be disabled by default");
+        assertEquals(0, config.maxURLLength(), "No default URL length limit expected");
+        assertNull(config.requestLimiter(), "No default request limiter expected");
 
         // With custom paths.
         config = UraClientConfiguration.forBaseURL(baseURL)
@@ -61,5 +73,41 @@ class UraClientConfigurationTest {
             .build();
         assertEquals(conTimeout, config.connectTimeout(), "Unexpected connection timeout value");
         assertEquals(timeout, config.timeout(), "Unexpected timeout value");
+
+        // With HTTP client options.
+        final Executor executor = Runnable::run;
+        config = UraClientConfiguration.forBaseURL(baseURL)
+            .withHttpVersion(HttpClient.Version.HTTP_1_1)
+            .withExecutor(executor)
+            .withConnectionReuse(false)
+            .build();
+        assertEquals(HttpClient.Version.HTTP_1_1, config.httpVersion(), "Unexpected HTTP version");
+        assertSame(executor, config.executor(), "Unexpected executor");
+        assertFalse(config.connectionReuse(), "Connection reuse should be disabled");
+
+        // With reconnect policy.
+        final ReconnectPolicy reconnectPolicy = ReconnectPolicy.builder().withMaxAttempts(5).build();
+        config = UraClientConfiguration.forBaseURL(baseURL)
+            .withReconnectPolicy(reconnectPolicy)
+            .withIdleTimeout(timeout)
+            .withParseParallelism(4)
+            .build();
+        assertEquals(reconnectPolicy, config.reconnectPolicy(), "Unexpected reconnect policy");
+        assertEquals(timeout, config.idleTimeout(), "Unexpected idle timeout");
+        assertEquals(4, config.parseParallelism(), "Unexpected parse parallelism");
+
+        // With response cache.
+        final ResponseCache cache = ResponseCache.builder().build();
+        final RequestLimiter limiter = RequestLimiter.builder().build();
+        config = UraClientConfiguration.forBaseURL(baseURL)
+            .withResponseCache(cache)
+            .withRequestCoalescing(true)
+            .withMaxURLLength(2048)
+            .withRequestLimiter(limiter)
+            .build();
+        assertSame(cache, config.responseCache(), "Unexpected response cache");
+        assertTrue(config.requestCoalescing(), "Request coalescing should be enabled");
+        assertEquals(2048, config.maxURLLength(), "Unexpected URL length limit");
+        assertSame(limiter, config.requestLimiter(), "Unexpected request limiter");
     }
 }
@@ -17,20 +17,36 @@
 package de.stklcode.pubtrans.ura;
 
 import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.http.trafficlistener.WiremockNetworkTrafficListener;
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import de.stklcode.pubtrans.ura.exception.UraClientException;
 import de.stklcode.pubtrans.ura.model.Message;
 import de.stklcode.pubtrans.ura.model.Stop;
 import de.stklcode.pubtrans.ura.model.Trip;
+import de.stklcode.pubtrans.ura.reader.TripFilter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
 import java.io.IOException;
+import java.net.Socket;
+import java.net.http.HttpClient;
 import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
@@ -44,10 +60,11 @@ import static org.junit.jupiter.api.Assertions.*;
  * @author Stefan Kalscheuer
  */
 class UraClientTest {
+    private static final AtomicInteger CONNECTIONS = new AtomicInteger();
 
     @RegisterExtension
     static WireMockExtension wireMock = WireMockExtension.newInstance()
-        .options(wireMockConfig().dynamicPort())
+        .options(wireMockConfig().dynamicPort().networkTrafficListener(new ConnectionCounter()))
         .build();
 
     @Test
@@ -444,6 +461,444 @@ class UraClientTest {
         );
     }
 
+    @Test
+    void streamTripsTest() throws UraClientException {
+        mockHttpToFile(1, "instant_V1_trips_all.txt");
+        UraClient uraClient = new UraClient(wireMock.baseUrl());
+
+        // Lazily read all trips.
+        try (Stream<Trip> trips = uraClient.forStops("100000").streamTrips()) {
+            List<Trip> list = trips.toList();
+            assertEquals(10, list.size());
+            assertEquals("27000165015001", list.get(0).id());
+            assertEquals("100002", list.get(9).stop().id());
+        }
+
+        // Abort early.
+        try (Stream<Trip> trips = uraClient.streamTrips(uraClient.forLines("55"))) {
+            assertEquals("55", trips.filter(t -> t.lineID().equals("55")).findFirst().map(Trip::lineID).orElse(null));
+        }
+
+        // Stops and messages.
+        mockHttpToFile(1, "instant_V1_stops_circle.txt");
+        try (Stream<Stop> stops = uraClient.forPosition(51.51009, -0.1345734, 200).streamStops()) {
+            assertEquals(13, stops.count());
+        }
+        mockHttpToFile(1, "instant_V1_messages.txt");
+        try (Stream<Message> messages = uraClient.forStops().streamMessages()) {
+            assertEquals(2, messages.count());
+        }
+
+        // Error on request.
+        mockHttpToError(500);
+        Exception e = assertThrows(UraClientException.class, () -> uraClient.forStops().streamTrips());
+        assertEquals("Failed to read trips from API", e.getMessage());
+    }
+
+    @Test
+    void asyncTest() {
+        mockHttpToFile(1, "instant_V1_trips_all.txt");
+        UraClient uraClient = new UraClient(wireMock.baseUrl());
+
+        List<Trip> trips = assertDoesNotThrow(() -> uraClient.forStops("100000").getTripsAsync().get());
+        assertEquals(10, trips.size());
+        assertEquals("27000165015001", trips.get(0).id());
+
+        mockHttpToFile(1, "instant_V1_stops_circle.txt");
+        List<Stop> stops = assertDoesNotThrow(() -> uraClient.getStopsAsync(uraClient.forStops()).get());
+        assertEquals(13, stops.size());
+
+        mockHttpToFile(1, "instant_V1_messages.txt");
+        List<Message> messages = assertDoesNotThrow(() -> uraClient.forStops().getMessagesAsync().get());
+        assertEquals(2, messages.size());
+
+        // Errors complete the future exceptionally.
+        mockHttpToError(503);
+        Exception e = assertThrows(ExecutionException.class, () -> uraClient.forStops().getTripsAsync().get());
+        e = assertInstanceOf(UraClientException.class, e.getCause());
+        assertEquals("Failed to read trips from API", e.getMessage());
+        assertEquals("API request failed with status 503", e.getCause().getMessage());
+    }
+
+    @Test
+    void publisherTest() throws Exception {
+        mockHttpToFile(1, "instant_V1_trips_all.txt");
+        UraClient uraClient = new UraClient(wireMock.baseUrl());
+
+        // Request items in small batches.
+        List<Trip> trips = collect(uraClient.forStops("100000").publishTrips(), 2).get(10, TimeUnit.SECONDS);
+        assertEquals(uraClient.forStops("100000").getTrips(), trips, "Published trips differ from list result");
+
+        mockHttpToFile(1, "instant_V1_stops_circle.txt");
+        List<Stop> stops = collect(uraClient.forStops().publishStops(), 1).get(10, TimeUnit.SECONDS);
+        assertEquals(13, stops.size());
+
+        mockHttpToFile(1, "instant_V1_messages.txt");
+        List<Message> messages = collect(uraClient.publishMessages(uraClient.forStops()), 5).get(10, TimeUnit.SECONDS);
+        assertEquals(2, messages.size());
+        messages = collect(uraClient.forStops("100707").publishMessages(), 1).get(10, TimeUnit.SECONDS);
+        assertEquals(uraClient.forStops("100707").getMessages(), messages, "Published messages differ from list result");
+
+        // Completion is signaled without further demand, also when the permit of a limiter is held.
+        messages = collectExactly(uraClient.forStops().publishMessages(), 2).get(10, TimeUnit.SECONDS);
+        assertEquals(2, messages.size(), "Exact demand should complete");
+        RequestLimiter limiter = RequestLimiter.builder().build();
+        UraClient limitedClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl()).withRequestLimiter(limiter).build()
+        );
+        messages = collectExactly(limitedClient.forStops().publishMessages(), 2).get(10, TimeUnit.SECONDS);
+        assertEquals(2, messages.size(), "Exact demand should complete with limiter");
+        assertEquals(0, limiter.inFlight(), "Permit should be released on completion");
+
+        // Errors are signaled to the subscriber.
+        mockHttpToError(503);
+        var failing = uraClient.forStops().publishTrips();
+        Exception e = assertThrows(ExecutionException.class, () -> collect(failing, 1).get(10, TimeUnit.SECONDS));
+        e = assertInstanceOf(UraClientException.class, e.getCause());
+        assertEquals("Failed to read trips from API", e.getMessage());
+    }
+
+    @Test
+    void tripFilterTest() {
+        UraClient uraClient = new UraClient(wireMock.baseUrl());
+
+        TripFilter filter = uraClient.forStops("100000", "100001").forLines("33").forDirection(1).toTripFilter();
+        assertEquals(Set.of("100000", "100001"), filter.stopIDs(), "Unexpected stop IDs");
+        assertEquals(Set.of("33"), filter.lineIDs(), "Unexpected line IDs");
+        assertEquals(1, filter.direction(), "Unexpected direction");
+        assertTrue(filter.stopNames().isEmpty(), "Unexpected stop names");
+
+        assertThrows(
+            IllegalStateException.class,
+            () -> uraClient.forPosition(51.51009, -0.1345734, 200).toTripFilter(),
+            "Position filter cannot be evaluated locally"
+        );
+        assertThrows(
+            IllegalStateException.class,
+            () -> uraClient.forStops("100000").towards("100001").toTripFilter(),
+            "Towards filter cannot be evaluated locally"
+        );
+    }
+
+    @Test
+    void sharedHttpClientTest() throws UraClientException {
+        mockHttpToFile(1, "instant_V1_trips_all.txt");
+
+        // Subsequent requests over the shared HTTP/1.1 client.
+        try (UraClient uraClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl())
+                .withHttpVersion(HttpClient.Version.HTTP_1_1)
+                .build()
+        )) {
+            CONNECTIONS.set(0);
+            assertEquals(10, uraClient.getTrips().size());
+            assertEquals(10, uraClient.getTrips().size());
+            assertEquals(1, CONNECTIONS.get(), "Connection of the shared HTTP client not reused");
+
+            // Closing the client releases the shared HTTP client, but does not break subsequent requests.
+            uraClient.close();
+            assertEquals(10, uraClient.getTrips().size());
+            assertEquals(2, CONNECTIONS.get(), "New HTTP client expected after close");
+        }
+
+        // Without connection reuse.
+        try (UraClient uraClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl())
+                .withConnectionReuse(false)
+                .build()
+        )) {
+            CONNECTIONS.set(0);
+            assertEquals(10, uraClient.getTrips().size());
+            assertEquals(10, uraClient.getTrips().size());
+            assertEquals(2, CONNECTIONS.get(), "New connection per request expected without connection reuse");
+        }
+    }
+
+    @Test
+    void responseCacheTest() throws Exception {
+        mockHttpToFile(1, "instant_V1_trips_all.txt");
+        wireMock.resetRequests();
+
+        ResponseCache cache = ResponseCache.builder().build();
+        UraClient uraClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl()).withResponseCache(cache).build()
+        );
+
+        // Identical queries are served from the cache.
+        List<Trip> trips = uraClient.forStops("100000").getTrips();
+        assertEquals(10, trips.size(), "Unexpected number of trips");
+        assertSame(trips, uraClient.forStops("100000").getTrips(), "Cached result expected");
+        assertEquals(5, uraClient.forStops("100000").getTrips(5).size(), "Limit not applied to cached result");
+        assertSame(trips, uraClient.forStops("100000").getTripsAsync().get(), "Cached result expected for async query");
+        assertThrows(UnsupportedOperationException.class, () -> trips.remove(0), "Cached result should be immutable");
+        wireMock.verify(1, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1")));
+
+        // Other queries issue a new request.
+        assertEquals(10, uraClient.forStops("100001").getTripsAsync().get().size(), "Unexpected number of trips");
+        assertEquals(10, uraClient.forStops("100001").getTrips().size(), "Unexpected number of trips");
+        wireMock.verify(2, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1")));
+
+        assertEquals(4, cache.hits(), "Unexpected number of cache hits");
+        assertEquals(2, cache.misses(), "Unexpected number of cache misses");
+    }
+
+    @Test
+    void requestCoalescingTest() throws Exception {
+        wireMock.stubFor(
+            get(urlPathEqualTo("/interfaces/ura/instant_V1")).willReturn(
+                aResponse().withFixedDelay(200).withBodyFile("instant_V1_trips_all.txt")
+            )
+        );
+        wireMock.resetRequests();
+
+        UraClient uraClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl()).withRequestCoalescing(true).build()
+        );
+
+        // Concurrent identical queries share a single request and result.
+        List<CompletableFuture<List<Trip>>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(uraClient.forStops("100000").getTripsAsync());
+        }
+        futures.add(CompletableFuture.supplyAsync(() -> assertDoesNotThrow(() -> uraClient.forStops("100000").getTrips())));
+        List<Trip> trips = futures.get(0).get(10, TimeUnit.SECONDS);
+        assertEquals(10, trips.size(), "Unexpected number of trips");
+        for (CompletableFuture<List<Trip>> future : futures) {
+            assertEquals(trips, future.get(10, TimeUnit.SECONDS), "Shared result expected");
+        }
+        wireMock.verify(1, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1")));
+
+        // Once completed, the next query issues a new request.
+        assertEquals(10, uraClient.forStops("100000").getTrips().size(), "Unexpected number of trips");
+        wireMock.verify(2, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1")));
+    }
+
+    @Test
+    void shardingTest() throws Exception {
+        mockHttpToFile(1, "instant_V1_trips_all.txt");
+        wireMock.resetRequests();
+
+        // Limit the URL length, so 4 stop IDs fit into a single request.
+        UraClient uraClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl())
+                .withMaxURLLength(wireMock.baseUrl().length() + 260)
+                .build()
+        );
+        String[] stops = {"100001", "100002", "100003", "100004", "100005", "100006", "100007", "100008", "100009", "100010"};
+
+        // Each shard returns the full mock result, so all 3 responses are merged.
+        assertEquals(30, uraClient.forStops(stops).getTrips().size(), "Unexpected number of merged trips");
+        wireMock.verify(3, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1")));
+        wireMock.verify(1, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1"))
+            .withQueryParam("StopID", equalTo("100001,100002,100003,100004")));
+        wireMock.verify(1, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1"))
+            .withQueryParam("StopID", equalTo("100005,100006,100007,100008")));
+        wireMock.verify(1, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1"))
+            .withQueryParam("StopID", equalTo("100009,100010")));
+
+        assertEquals(5, uraClient.forStops(stops).getTrips(5).size(), "Limit not applied to merged trips");
+        assertEquals(30, uraClient.forStops(stops).getTripsAsync().get().size(), "Unexpected number of merged trips");
+        try (Stream<Trip> trips = uraClient.forStops(stops).streamTrips()) {
+            assertEquals(30, trips.count(), "Unexpected number of streamed trips");
+        }
+
+        // Short queries are not split.
+        wireMock.resetRequests();
+        assertEquals(10, uraClient.forStops("100001").getTrips().size(), "Unexpected number of trips");
+        wireMock.verify(1, getRequestedFor(urlPathEqualTo("/interfaces/ura/instant_V1")));
+
+        // Errors of a single shard fail the whole query.
+        mockHttpToError(500);
+        UraClientException e = assertThrows(
+            UraClientException.class,
+            () -> uraClient.forStops(stops).getTrips(),
+            "Failed shard should fail the query"
+        );
+        assertEquals("Failed to read trips from API", e.getMessage(), "Unexpected error message");
+        assertEquals("API request failed with status 500", e.getCause().getMessage(), "Unexpected error cause");
+    }
+
+    @Test
+    void requestLimiterTest() throws Exception {
+        mockHttpToFile(1, "instant_V1_trips_all.txt");
+
+        RequestLimiter limiter = RequestLimiter.builder()
+            .withRate(1.0)
+            .withBurst(2)
+            .withMaxWait(Duration.ZERO)
+            .withClock(Clock.fixed(Instant.EPOCH, ZoneOffset.UTC))
+            .build();
+        UraClient uraClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl()).withRequestLimiter(limiter).build()
+        );
+
+        // Burst is permitted, further requests fail fast.
+        assertEquals(10, uraClient.getTrips().size(), "Unexpected number of trips");
+        assertEquals(10, uraClient.getTripsAsync(uraClient.forStops()).get().size(), "Unexpected number of trips");
+        UraClientException e = assertThrows(
+            UraClientException.class,
+            () -> uraClient.getTrips(),
+            "Request limit not applied"
+        );
+        assertEquals("Request limit exceeded", e.getCause().getMessage(), "Unexpected error cause");
+        ExecutionException ee = assertThrows(
+            ExecutionException.class,
+            () -> uraClient.getTripsAsync(uraClient.forStops()).get(),
+            "Request limit not applied to asynchronous request"
+        );
+        assertInstanceOf(UraClientException.class, ee.getCause(), "Unexpected error");
+        assertEquals(2, limiter.rejected(), "Unexpected number of rejected requests");
+        assertEquals(0, limiter.inFlight(), "Permits should be released");
+
+        // Permit is held until the response body has been read.
+        RequestLimiter bodyLimiter = RequestLimiter.builder().withRate(100.0).withConcurrency(1, 1, 1).build();
+        UraClient bodyClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl()).withRequestLimiter(bodyLimiter).build()
+        );
+        try (Stream<Trip> trips = bodyClient.streamTrips(bodyClient.forStops())) {
+            assertTrue(trips.findFirst().isPresent(), "Trip expected");
+            assertEquals(1, bodyLimiter.inFlight(), "Permit should be held while the body is read");
+        }
+        assertEquals(0, bodyLimiter.inFlight(), "Permit should be released when the stream is closed");
+        assertEquals(10, bodyClient.getTrips().size(), "Unexpected number of trips");
+        assertEquals(0, bodyLimiter.inFlight(), "Permit should be released after reading the body");
+
+        // Publishers hold the permit until the response is complete or the subscription is cancelled.
+        RequestLimiter publishLimiter = RequestLimiter.builder()
+            .withRate(100.0)
+            .withConcurrency(1, 1, 2)
+            .withMaxWait(Duration.ZERO)
+            .build();
+        UraClient publishClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl()).withRequestLimiter(publishLimiter).build()
+        );
+        CompletableFuture<Flow.Subscription> held = new CompletableFuture<>();
+        CompletableFuture<Trip> first = new CompletableFuture<>();
+        publishClient.publishTrips(publishClient.forStops()).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                held.complete(subscription);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Trip item) {
+                first.complete(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                first.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                // Not expected with pending demand.
+            }
+        });
+        assertNotNull(first.get(5, TimeUnit.SECONDS), "Trip expected");
+        assertEquals(1, publishLimiter.inFlight(), "Permit should be held until the response is complete");
+        ee = assertThrows(
+            ExecutionException.class,
+            () -> collect(publishClient.publishStops(publishClient.forStops()), 5).get(5, TimeUnit.SECONDS),
+            "Request limit not applied to publisher"
+        );
+        assertInstanceOf(UraClientException.class, ee.getCause(), "Unexpected error");
+        assertEquals("Request limit exceeded", ee.getCause().getCause().getMessage(), "Unexpected error cause");
+        held.get().cancel();
+        assertEquals(0, publishLimiter.inFlight(), "Permit should be released when the subscription is cancelled");
+        assertEquals(2, publishLimiter.limit(), "Cancelled request in flight should count for the limit");
+        assertEquals(
+            10,
+            collect(publishClient.publishTrips(publishClient.forStops()), 3).get(5, TimeUnit.SECONDS).size(),
+            "Unexpected number of trips"
+        );
+        assertEquals(0, publishLimiter.inFlight(), "Permit should be released when the response is complete");
+
+        // Stream publishers are not limited.
+        wireMock.stubFor(
+            get(urlPathEqualTo("/interfaces/ura/stream_V1")).willReturn(
+                aResponse().withBodyFile("instant_V1_trips_all.txt")
+            )
+        );
+        assertEquals(
+            10,
+            collect(publishClient.publishTripsStream(publishClient.forStops()), 3).get(5, TimeUnit.SECONDS).size(),
+            "Unexpected number of trips from stream publisher"
+        );
+        assertEquals(1, publishLimiter.rejected(), "Stream publisher should not require a permit");
+
+        // Server errors decrease the concurrency limit.
+        mockHttpToError(503);
+        RequestLimiter adaptive = RequestLimiter.builder().withRate(100.0).withConcurrency(10, 1, 10).build();
+        UraClient adaptiveClient = new UraClient(
+            UraClientConfiguration.forBaseURL(wireMock.baseUrl()).withRequestLimiter(adaptive).build()
+        );
+        assertThrows(UraClientException.class, adaptiveClient::getTrips, "Server error expected");
+        assertEquals(9, adaptive.limit(), "Limit should decrease on server error");
+    }
+
+    private static <T> CompletableFuture<List<T>> collect(Flow.Publisher<T> publisher, int batchSize) {
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private final List<T> items = new ArrayList<>();
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(batchSize);
+            }
+
+            @Override
+            public void onNext(T item) {
+                items.add(item);
+                if (items.size() % batchSize == 0) {
+                    subscription.request(batchSize);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(items);
+            }
+        });
+        return result;
+    }
+
+    private static <T> CompletableFuture<List<T>> collectExactly(Flow.Publisher<T> publisher, int n) {
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private final List<T> items = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(n);
+            }
+
+            @Override
+            public void onNext(T item) {
+                items.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(items);
+            }
+        });
+        return result;
+    }
+
     private static void mockHttpToFile(int version, String resourceFile) {
         wireMock.stubFor(
             get(urlPathEqualTo("/interfaces/ura/instant_V" + version)).willReturn(
@@ -467,4 +922,29 @@ class UraClientTest {
             )
         );
     }
+
+    /**
+     * Traffic listener counting the connections opened to the mock server.
+     */
+    private static class ConnectionCounter implements WiremockNetworkTrafficListener {
+        @Override
+        public void opened(Socket socket) {
+            CONNECTIONS.incrementAndGet();
+        }
+
+        @Override
+        public void incoming(Socket socket, ByteBuffer bytes) {
+            // Not relevant.
+        }
+
+        @Override
+        public void outgoing(Socket socket, ByteBuffer bytes) {
+            // Not relevant.
+        }
+
+        @Override
+        public void closed(Socket socket) {
+            // Not relevant.
+        }
+    }
 }
@@ -31,6 +31,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.net.URI;
+import java.net.http.HttpTimeoutException;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.Deque;
@@ -269,6 +270,170 @@ class AsyncUraTripReaderTest {
         assertTrue(trips.containsAll(trips2), "Same object should have been pushed to both lists");
     }
 
+    /**
+     * Test reconnecting after the stream has been closed by the server.
+     *
+     * @throws InterruptedException Thread interrupted.
+     */
+    @Test
+    void reconnectTest() throws InterruptedException {
+        Deque<Trip> trips = new ConcurrentLinkedDeque<>();
+        Deque<ReconnectEvent> events = new ConcurrentLinkedDeque<>();
+
+        // Serve the full stream in a single chunk, so the server closes the stream after the first 7 trips.
+        readLinesToMock(1, "/__files/stream_V1_stops_all.txt", 1);
+
+        AsyncUraTripReader tr = new AsyncUraTripReader(
+            URI.create(httpMock.baseUrl() + "/interfaces/ura/stream_V1"),
+            UraClientConfiguration.forBaseURL(httpMock.baseUrl())
+                .withReconnectPolicy(
+                    ReconnectPolicy.builder()
+                        .withInitialDelay(Duration.ofMillis(100))
+                        .withMaxAttempts(3)
+                        .build()
+                )
+                .build(),
+            Collections.singletonList(trips::add)
+        );
+        tr.addReconnectListener(events::add);
+
+        tr.open();
+        TimeUnit.SECONDS.sleep(3);
+        tr.close();
+
+        assertTrue(trips.size() >= 14, "Reader did not reconnect, only " + trips.size() + " trips received");
+        assertEquals(0, trips.size() % 7, "Each connection should deliver all 7 trips");
+        assertTrue(
+            events.stream().anyMatch(e -> e.type() == ReconnectEvent.Type.DISCONNECTED && e.attempt() == 1),
+            "Disconnect event expected"
+        );
+        assertTrue(
+            events.stream().anyMatch(e -> e.type() == ReconnectEvent.Type.RECONNECTED),
+            "Reconnect event expected"
+        );
+
+        // No further trips after closing.
+        int count = trips.size();
+        TimeUnit.SECONDS.sleep(1);
+        assertEquals(count, trips.size(), "Reader should not reconnect after closing");
+
+        // Give up after the maximum number of attempts, if no data is received.
+        events.clear();
+        WireMock.stubFor(get(urlPathEqualTo("/interfaces/ura/stream_V1")).willReturn(aResponse().withStatus(503)));
+        tr.open();
+        try {
+            TimeUnit.SECONDS.sleep(3);
+            assertEquals(4, events.size(), "Unexpected number of reconnect events");
+            assertEquals(ReconnectEvent.Type.FAILED, events.getLast().type(), "Reader should fail after 3 attempts");
+            assertTrue(
+                events.getLast().cause().getMessage().startsWith("API request failed with status "),
+                "Error response should be reported as cause"
+            );
+            assertThrows(IllegalStateException.class, tr::close, "Closing the failed reader should raise an exception");
+        } finally {
+            // Stop reconnecting, if the reader did not fail as expected.
+            try {
+                tr.close();
+            } catch (IllegalStateException e) {
+                // Reader has already failed.
+            }
+        }
+    }
+
+    /**
+     * Test the idle watchdog on a slow stream.
+     *
+     * @throws InterruptedException Thread interrupted.
+     */
+    @Test
+    void idleTimeoutTest() throws InterruptedException {
+        Deque<Trip> trips = new ConcurrentLinkedDeque<>();
+        Deque<Throwable> errors = new ConcurrentLinkedDeque<>();
+
+        // One line each 500ms exceeds the idle timeout of 200ms.
+        readLinesToMock(1, "/__files/stream_V1_stops_all.txt", 8);
+
+        AsyncUraTripReader tr = new AsyncUraTripReader(
+            URI.create(httpMock.baseUrl() + "/interfaces/ura/stream_V1"),
+            UraClientConfiguration.forBaseURL(httpMock.baseUrl())
+                .withIdleTimeout(Duration.ofMillis(200))
+                .build(),
+            Collections.singletonList(trips::add)
+        );
+        tr.addErrorListener(errors::add);
+
+        tr.open();
+        TimeUnit.SECONDS.sleep(2);
+        assertEquals(1, errors.size(), "Idle connection should have been aborted");
+        assertTrue(tr.idleTime().compareTo(Duration.ofSeconds(1)) >= 0, "Idle time should grow after abort");
+        assertInstanceOf(HttpTimeoutException.class, errors.getFirst(), "Unexpected error type");
+        assertTrue(trips.size() < 7, "Stream should not have been read completely");
+        assertThrows(IllegalStateException.class, tr::close, "Closing the failed reader should raise an exception");
+    }
+
+    /**
+     * Test routing of a shared stream to multiple subscribers.
+     *
+     * @throws InterruptedException Thread interrupted.
+     */
+    @Test
+    void hubTest() throws InterruptedException {
+        Deque<Trip> all = new ConcurrentLinkedDeque<>();
+        Deque<Trip> line65 = new ConcurrentLinkedDeque<>();
+        Deque<Trip> direction1 = new ConcurrentLinkedDeque<>();
+
+        httpMock.resetRequests();
+        readLinesToMock(1, "/__files/stream_V1_stops_all.txt", 1);
+
+        try (UraStreamHub hub = new UraStreamHub(
+            URI.create(httpMock.baseUrl() + "/interfaces/ura/stream_V1"),
+            null,
+            null
+        )) {
+            hub.subscribe(TripFilter.all(), all::add);
+            hub.subscribe(TripFilter.builder().forLines("65").build(), line65::add);
+            UraStreamHub.Subscription sub = hub.subscribe(TripFilter.builder().forDirection(1).build(), direction1::add);
+            assertEquals(3, hub.subscriptionCount(), "Unexpected number of subscriptions");
+
+            // Wait for the stream to be read, the response might be delayed by a connection of a previous test.
+            for (int i = 0; i < 50 && (all.size() < 7 || line65.isEmpty() || direction1.size() < 2); i++) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+
+            assertEquals(7, all.size(), "Unexpected number of trips for unfiltered subscription");
+            assertEquals(1, line65.size(), "Unexpected number of trips for line 65");
+            assertEquals("65", line65.getFirst().lineID(), "Unexpected line ID");
+            assertEquals(2, direction1.size(), "Unexpected number of trips for direction 1");
+
+            sub.close();
+            assertEquals(2, hub.subscriptionCount(), "Subscription not removed");
+        }
+
+        // Only one upstream connection for all subscribers.
+        httpMock.verify(1, getRequestedFor(urlPathEqualTo("/interfaces/ura/stream_V1")));
+    }
+
+    @Test
+    void filterTest() throws InterruptedException {
+        Deque<Trip> trips = new ConcurrentLinkedDeque<>();
+
+        // Split the stream into chunks that do not align with line breaks.
+        readLinesToMock(1, "/__files/stream_V1_stops_all.txt", 3);
+
+        try (AsyncUraTripReader tr = new AsyncUraTripReader(
+            URI.create(httpMock.baseUrl() + "/interfaces/ura/stream_V1"),
+            trips::add
+        )) {
+            tr.setFilter(TripFilter.builder().forStops("100308", "215624").forLines("8").build());
+            tr.open();
+            TimeUnit.SECONDS.sleep(2);
+        }
+
+        assertEquals(1, trips.size(), "Unexpected number of filtered trips");
+        assertEquals("215624", trips.getFirst().stop().id(), "Unexpected stop ID");
+        assertEquals("Stolberg Mühlener Bf.", trips.getFirst().destinationName(), "Multibyte characters not decoded");
+    }
+
     /**
      * Read an input file to the line buffer.
      *
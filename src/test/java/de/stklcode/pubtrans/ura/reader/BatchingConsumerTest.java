@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link BatchingConsumer}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class BatchingConsumerTest {
+    @Test
+    void sizeTest() {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        try (BatchingConsumer<Integer> consumer = BatchingConsumer.forConsumer((List<Integer> b) -> batches.add(List.copyOf(b)))
+            .withMaxSize(3)
+            .withMaxLinger(Duration.ofMinutes(1))
+            .build()) {
+            for (int i = 1; i <= 7; i++) {
+                consumer.accept(i);
+            }
+            assertEquals(List.of(List.of(1, 2, 3), List.of(4, 5, 6)), batches, "Full batches should be flushed");
+        }
+
+        // Remaining item is flushed on close.
+        assertEquals(List.of(List.of(1, 2, 3), List.of(4, 5, 6), List.of(7)), batches, "Unexpected batches after close");
+    }
+
+    @Test
+    void lingerTest() throws InterruptedException {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        BatchingConsumer<Integer> consumer = BatchingConsumer.forConsumer((List<Integer> b) -> batches.add(List.copyOf(b)))
+            .withMaxSize(100)
+            .withMaxLinger(Duration.ofMillis(100))
+            .build();
+        consumer.accept(1);
+        consumer.accept(2);
+        assertTrue(batches.isEmpty(), "Batch should not be flushed before linger time");
+
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertEquals(List.of(List.of(1, 2)), batches, "Batch should be flushed after linger time");
+        assertEquals(1, consumer.batches(), "Unexpected number of batches");
+
+        consumer.close();
+        consumer.accept(3);
+        assertEquals(1, consumer.dropped(), "Items should be dropped after closing");
+        assertEquals(1, batches.size(), "No empty batch expected on close");
+    }
+
+    @Test
+    void slowDelegateTest() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        BatchingConsumer<Integer> consumer = BatchingConsumer.forConsumer((List<Integer> b) -> {
+                batches.add(List.copyOf(b));
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            })
+            .withMaxSize(100)
+            .withMaxLinger(Duration.ofMillis(50))
+            .build();
+
+        // Time-triggered flush is blocked in the delegate.
+        consumer.accept(1);
+        assertTrue(started.await(1, TimeUnit.SECONDS), "Batch should be flushed after linger time");
+
+        // Adding items is not blocked by the running delegate.
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> consumer.accept(2), "Adding item blocked by delegate");
+
+        release.countDown();
+        consumer.close();
+        assertEquals(List.of(List.of(1), List.of(2)), batches, "Unexpected batches after close");
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Trip;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link ConflatingConsumer}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class ConflatingConsumerTest {
+    @Test
+    void conflateTripsTest() throws InterruptedException {
+        // Delegate is blocked while processing the first trip.
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Trip> trips = new CopyOnWriteArrayList<>();
+        try (ConflatingConsumer<Trip> consumer = ConflatingConsumer.forTrips(trip -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            trips.add(trip);
+        }).build()) {
+            consumer.accept(trip("1", 1, 100));
+            assertTrue(started.await(1, TimeUnit.SECONDS), "Delegate not invoked");
+
+            // Subsequent predictions for trip 1 and 2 at visit 1 are conflated, visit 2 of trip 1 is kept.
+            consumer.accept(trip("1", 1, 200));
+            consumer.accept(trip("2", 1, 200));
+            consumer.accept(trip("1", 2, 300));
+            consumer.accept(trip("1", 1, 400));
+            consumer.accept(trip("2", 1, 500));
+            assertEquals(3, consumer.lag(), "Unexpected lag");
+            assertEquals(2, consumer.conflated(), "Unexpected number of conflated trips");
+
+            release.countDown();
+            for (int i = 0; i < 100 && consumer.delivered() < 4; i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+        }
+
+        assertEquals(
+            List.of(trip("1", 1, 100), trip("1", 1, 400), trip("2", 1, 500), trip("1", 2, 300)),
+            trips,
+            "Unexpected delivered trips"
+        );
+    }
+
+    @Test
+    void keyFunctionTest() {
+        List<String> items = new CopyOnWriteArrayList<>();
+        ConflatingConsumer<String> consumer = ConflatingConsumer.forConsumer((String s) -> items.add(s), String::length)
+            .withExecutor(Runnable::run)
+            .build();
+        consumer.accept("a");
+        consumer.accept("bc");
+        consumer.close();
+        consumer.accept("d");
+        assertEquals(List.of("a", "bc"), items, "Unexpected delivered items");
+        assertEquals(1, consumer.dropped(), "Items should be dropped after closing");
+    }
+
+    @Test
+    void failureTest() {
+        List<String> items = new CopyOnWriteArrayList<>();
+        ConflatingConsumer<String> consumer = ConflatingConsumer.forConsumer((String s) -> {
+                if ("b".equals(s)) {
+                    throw new IllegalStateException("test");
+                } else if ("c".equals(s)) {
+                    throw new AssertionError("test");
+                }
+                items.add(s);
+            }, s -> s)
+            .withExecutor(Runnable::run)
+            .build();
+        for (String s : List.of("a", "b", "c", "d")) {
+            consumer.accept(s);
+        }
+        assertEquals(List.of("a", "d"), items, "Failure should not stop the consumer");
+        assertEquals(2, consumer.failed(), "Unexpected number of failed items");
+        assertEquals(0, consumer.lag(), "No items should be pending");
+    }
+
+    @Test
+    void rejectedTest() {
+        List<String> items = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        try (ConflatingConsumer<String> consumer = ConflatingConsumer.forConsumer((String s) -> items.add(s), s -> s)
+            .withExecutor(executor)
+            .build()) {
+            assertDoesNotThrow(() -> consumer.accept("a"), "Rejected execution should not be passed to the producer");
+            assertDoesNotThrow(() -> consumer.accept("b"), "Rejected execution should not be passed to the producer");
+            assertEquals(2, consumer.dropped(), "Rejected items should be dropped");
+            assertEquals(0, consumer.lag(), "No items should be pending");
+        }
+        assertTrue(items.isEmpty(), "No items should be delivered");
+    }
+
+    private static Trip trip(String id, int visitID, long estimatedTime) {
+        return new Trip(null, id, visitID, "1", "1", 1, "Dest", "Dest", estimatedTime, "0");
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Stop;
+import de.stklcode.pubtrans.ura.model.Trip;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link DeltaConsumer}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class DeltaConsumerTest {
+    private static final Stop STOP = new Stop("100308", "Eckenerstraße", "", 0, 50.7539658, 6.1541161);
+    private static final long NOW = 1542372000000L;
+
+    @Test
+    void changeTest() {
+        List<TripEvent> events = new ArrayList<>();
+        MutableClock clock = new MutableClock(NOW);
+        DeltaConsumer consumer = DeltaConsumer.forEvents(events::add)
+            .withEtaThreshold(Duration.ofSeconds(30))
+            .withClock(clock)
+            .build();
+
+        consumer.accept(trip("1", 1, NOW + 60000, "301001", "Elisenbrunnen"));
+        assertEquals(List.of(TripEvent.Type.ADDED), types(events), "New prediction should be added");
+        assertNull(events.get(0).previous(), "No previous state expected for new predictions");
+
+        // Unchanged and small ETA changes are suppressed, but do not add up unnoticed.
+        events.clear();
+        consumer.accept(trip("1", 1, NOW + 60000, "301001", "Elisenbrunnen"));
+        consumer.accept(trip("1", 1, NOW + 80000, "301001", "Elisenbrunnen"));
+        assertTrue(events.isEmpty(), "Unchanged predictions should be suppressed");
+        assertEquals(2, consumer.suppressed(), "Unexpected number of suppressed predictions");
+        consumer.accept(trip("1", 1, NOW + 100000, "301001", "Elisenbrunnen"));
+        assertEquals(List.of(TripEvent.Type.ETA_CHANGED), types(events), "ETA change should be reported");
+        assertEquals(NOW + 80000, events.get(0).previous().estimatedTime(), "Unexpected previous state");
+
+        // Other visits of the same trip are independent.
+        events.clear();
+        consumer.accept(trip("1", 2, NOW + 200000, "301001", "Elisenbrunnen"));
+        consumer.accept(trip("1", 1, NOW + 100000, "301002", "Bushof"));
+        assertEquals(
+            List.of(TripEvent.Type.ADDED, TripEvent.Type.VEHICLE_CHANGED, TripEvent.Type.DESTINATION_CHANGED),
+            types(events),
+            "Unexpected events"
+        );
+        assertEquals(2, consumer.size(), "Unexpected number of known predictions");
+    }
+
+    @Test
+    void expiryTest() {
+        List<TripEvent> events = new ArrayList<>();
+        MutableClock clock = new MutableClock(NOW);
+        DeltaConsumer consumer = DeltaConsumer.forEvents(events::add)
+            .withExpiry(Duration.ofMinutes(1))
+            .withClock(clock)
+            .build();
+
+        consumer.accept(trip("1", 1, NOW, "301001", "Elisenbrunnen"));
+        consumer.accept(trip("2", 1, NOW + 120000, "301002", "Elisenbrunnen"));
+
+        // Not yet expired.
+        clock.set(NOW + 59000);
+        consumer.expire();
+        assertEquals(2, consumer.size(), "Prediction expired too early");
+
+        // Expired predictions are removed while receiving other trips.
+        events.clear();
+        clock.set(NOW + 90000);
+        consumer.accept(trip("2", 1, NOW + 120000, "301002", "Elisenbrunnen"));
+        assertEquals(List.of(TripEvent.Type.EXPIRED), types(events), "Prediction should have expired");
+        assertEquals("1", events.get(0).trip().id(), "Unexpected expired trip");
+        assertEquals(1, consumer.size(), "Expired prediction should be removed");
+
+        // Outdated predictions are not added again.
+        events.clear();
+        consumer.accept(trip("1", 1, NOW, "301001", "Elisenbrunnen"));
+        assertTrue(events.isEmpty(), "Outdated prediction should be suppressed");
+        assertEquals(1, consumer.size(), "Outdated prediction should not be added");
+    }
+
+    @Test
+    void clockStepTest() {
+        List<TripEvent> events = new ArrayList<>();
+        SteppingClock clock = new SteppingClock(NOW);
+        DeltaConsumer consumer = DeltaConsumer.forEvents(events::add)
+            .withExpiry(Duration.ofMinutes(1))
+            .withClock(clock)
+            .build();
+        consumer.accept(trip("1", 1, NOW, "301001", "Elisenbrunnen"));
+        events.clear();
+
+        // Clock steps back between advancing the wheel and checking the prediction.
+        clock.set(NOW + 90000);
+        clock.stepBack(NOW + 30000);
+        consumer.expire();
+        assertTrue(events.isEmpty(), "Prediction should not expire after the clock stepped back");
+        assertEquals(1, consumer.size(), "Prediction should be kept");
+
+        // The prediction is rescheduled and expires later.
+        clock.set(NOW + 95000);
+        consumer.expire();
+        assertEquals(List.of(TripEvent.Type.EXPIRED), types(events), "Prediction should have expired");
+        assertEquals(0, consumer.size(), "Expired prediction should be removed");
+    }
+
+    private static Trip trip(String id, int visitID, long estimatedTime, String vehicleID, String destination) {
+        return new Trip(STOP, id, visitID, "65", "65", 2, destination, destination, estimatedTime, vehicleID);
+    }
+
+    private static List<TripEvent.Type> types(List<TripEvent> events) {
+        return events.stream().map(TripEvent::type).toList();
+    }
+
+    /**
+     * Clock that steps back to a given time right after the next read.
+     */
+    private static final class SteppingClock extends MutableClock {
+        private volatile long stepBack = -1;
+
+        SteppingClock(long millis) {
+            super(millis);
+        }
+
+        void stepBack(long millis) {
+            this.stepBack = millis;
+        }
+
+        @Override
+        public long millis() {
+            long millis = super.millis();
+            if (stepBack >= 0) {
+                set(stepBack);
+                stepBack = -1;
+            }
+            return millis;
+        }
+    }
+}
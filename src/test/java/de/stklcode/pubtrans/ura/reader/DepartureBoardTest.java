@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Stop;
+import de.stklcode.pubtrans.ura.model.Trip;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link DepartureBoard}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class DepartureBoardTest {
+    private static final Stop STOP_1 = new Stop("100308", "Eckenerstraße", "", 0, 50.7539658, 6.1541161);
+    private static final Stop STOP_2 = new Stop("100629", "Campus Melaten", "", 0, 50.78247, 6.05053);
+    private static final long NOW = 1542372000000L;
+
+    @Test
+    void orderTest() {
+        DepartureBoard board = DepartureBoard.builder().withClock(new MutableClock(NOW)).build();
+        board.accept(trip(STOP_1, "3", 1, NOW + 300000));
+        board.accept(trip(STOP_1, "1", 1, NOW + 100000));
+        board.accept(trip(STOP_1, "2", 1, NOW + 200000));
+        board.accept(trip(STOP_2, "1", 2, NOW + 150000));
+
+        assertEquals(List.of("1", "2"), ids(board.nextDepartures(STOP_1.id(), 2)), "Unexpected departures");
+        assertEquals(List.of("1", "2", "3"), ids(board.nextDepartures(STOP_1.id(), 10)), "Unexpected departures");
+        assertEquals(List.of("1"), ids(board.nextDepartures(STOP_2.id(), 10)), "Unexpected departures at stop 2");
+        assertTrue(board.nextDepartures("999999", 10).isEmpty(), "No departures expected at unknown stop");
+        assertTrue(board.nextDepartures(STOP_1.id(), 0).isEmpty(), "No departures expected for n=0");
+
+        // Updated predictions replace the previous ones.
+        board.accept(trip(STOP_1, "1", 1, NOW + 400000));
+        board.accept(trip(STOP_1, "2", 1, NOW + 200000));
+        assertEquals(List.of("2", "3", "1"), ids(board.nextDepartures(STOP_1.id(), 10)), "Prediction not replaced");
+        assertEquals(4, board.size(), "Unexpected number of predictions");
+
+        // Predictions without stop are ignored.
+        assertDoesNotThrow(() -> board.accept(trip(null, "4", 1, NOW)), "Prediction without stop should be ignored");
+        assertDoesNotThrow(
+            () -> board.accept(trip(new Stop(null, "Unknown", "", 0, 0.0, 0.0), "5", 1, NOW)),
+            "Prediction without stop ID should be ignored"
+        );
+        assertEquals(4, board.size(), "Predictions without stop should not be added");
+    }
+
+    @Test
+    void evictTest() {
+        MutableClock clock = new MutableClock(NOW);
+        DepartureBoard board = DepartureBoard.builder()
+            .withGracePeriod(Duration.ofMinutes(1))
+            .withClock(clock)
+            .build();
+        board.accept(trip(STOP_1, "1", 1, NOW));
+        board.accept(trip(STOP_1, "2", 1, NOW + 120000));
+        board.accept(trip(STOP_2, "3", 1, NOW));
+
+        // Departures within the grace period are still shown.
+        clock.set(NOW + 30000);
+        assertEquals(List.of("1", "2"), ids(board.nextDepartures(STOP_1.id(), 10)), "Unexpected departures");
+
+        // Departed predictions are hidden and evicted on the next update.
+        clock.set(NOW + 90000);
+        assertEquals(List.of("2"), ids(board.nextDepartures(STOP_1.id(), 10)), "Departed prediction not hidden");
+        board.accept(trip(STOP_1, "2", 1, NOW + 150000));
+        assertEquals(2, board.size(), "Departed prediction not evicted");
+        board.evict();
+        assertEquals(1, board.size(), "Departed prediction at other stop not evicted");
+
+        // Outdated predictions remove the current one.
+        board.accept(trip(STOP_1, "2", 1, NOW));
+        assertEquals(0, board.size(), "Outdated prediction should remove the trip");
+        assertTrue(board.nextDepartures(STOP_1.id(), 10).isEmpty(), "No departures expected");
+    }
+
+    private static Trip trip(Stop stop, String id, int visitID, long estimatedTime) {
+        return new Trip(stop, id, visitID, "65", "65", 2, "Elisenbrunnen", "Elisenbrunnen", estimatedTime, "301001");
+    }
+
+    private static List<String> ids(List<Trip> trips) {
+        return trips.stream().map(Trip::id).toList();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit test for the {@link LineFilter}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class LineFilterTest {
+    private static final String TRIP_V1 = "[1,\"Fischbachstraße\",\"215812\",\"\",0,50.73893,6.2666311,6,\"8\",\"8\",1," +
+        "\"Eschweiler Bushof\",\"Eschweiler Bushof\",\"0\",\"27000165015001\",1482856620000]";
+    private static final String TRIP_V2 = "[1, \"Campus Melaten\", 100629, \"\", 0, 50.78247, 6.05053, 4, 764, \"3B\"," +
+        "\"2\",\"Ponttor-Hbf.-Schanz\",\"Ponttor-Hbf.-Schanz\",327001,16000304013001,1542375720000]";
+    private static final String STOP = "[0,\"Stollenweg\",\"100210\",null,0,50.7822619,6.1557408]";
+    private static final String VERSION = "[4,\"1.0\",1542370828725]";
+
+    @Test
+    void stopFilterTest() {
+        LineFilter filter = new LineFilter(TripFilter.builder().forStops("215812", "100629").build());
+        assertAccept(true, filter, TRIP_V1, "Quoted stop ID should match");
+        assertAccept(true, filter, TRIP_V2, "Numeric stop ID should match");
+        assertAccept(true, filter, VERSION, "Version line should always pass");
+        assertAccept(false, filter, STOP, "Stop line should be rejected");
+        assertAccept(false, filter, TRIP_V1.replace("215812", "215813"), "Other stop ID should be rejected");
+        assertAccept(false, filter, TRIP_V1.replace("215812", "2158120"), "Prefix should not match");
+        assertAccept(false, filter, TRIP_V1.replace("\"215812\"", "null"), "Null stop ID should be rejected");
+    }
+
+    @Test
+    void lineFilterTest() {
+        LineFilter filter = new LineFilter(TripFilter.builder().forStops("215812").forLines("8", "Linie ä").build());
+        assertAccept(true, filter, TRIP_V1, "Stop and line ID should match");
+        assertAccept(false, filter, TRIP_V1.replace(",6,\"8\",", ",6,\"9\","), "Other line ID should be rejected");
+        assertAccept(true, filter, TRIP_V1.replace(",6,\"8\",", ",6,\"Linie ä\","), "Non-ASCII line ID should match");
+        assertAccept(true, filter, TRIP_V1.replace("Fischbachstraße", "Fischbach\\\"straße"),
+            "Escaped quotes in other fields should be skipped");
+
+        filter = new LineFilter(TripFilter.builder().forLines("764").build());
+        assertAccept(true, filter, TRIP_V2, "Numeric line ID should match");
+        assertAccept(false, filter, TRIP_V1, "Line ID should not match");
+    }
+
+    @Test
+    void conservativeTest() throws IOException {
+        LineFilter filter = new LineFilter(TripFilter.builder().forStops("100629").build());
+        assertAccept(true, filter, "", "Empty line should be left to the decoder");
+        assertAccept(true, filter, "{\"foo\":1}", "Invalid line should be left to the decoder");
+        assertAccept(true, filter, "[1,\"Fischbachstraße\"]", "Too short line should be left to the decoder");
+        assertAccept(true, filter, TRIP_V1.replace("\"215812\"", "\"2158\\u0031\""),
+            "Escaped ID should be left to the decoder");
+
+        // Filters on other fields are only checked after decoding.
+        filter = new LineFilter(TripFilter.builder().forDirection(2).build());
+        assertAccept(true, filter, TRIP_V1, "Trip should pass without ID criteria");
+        assertAccept(false, filter, STOP, "Stop line should be rejected");
+        assertFalse(filter.filter().test(new UraLineDecoder().decodeTrip(TRIP_V1)), "Direction should not match");
+    }
+
+    private static void assertAccept(boolean expected, LineFilter filter, String line, String message) {
+        byte[] raw = ("xx" + line + "yy").getBytes(UTF_8);
+        assertEquals(expected, filter.accept(raw, 2, raw.length - 4), message);
+    }
+}
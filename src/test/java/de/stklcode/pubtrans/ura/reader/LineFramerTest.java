@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Unit test for the {@link LineFramer}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class LineFramerTest {
+    @Test
+    void framingTest() throws IOException {
+        // Simple lines with default buffer.
+        assertEquals(List.of("[4,\"1.0\"]", "[1,\"a\"]"), readLines("[4,\"1.0\"]\n[1,\"a\"]\n", 8192));
+
+        // Windows line breaks, empty line and trailing line without line break.
+        assertEquals(List.of("[1]", "", "[2]"), readLines("[1]\r\n\r\n[2]", 8192));
+
+        // Lines exceeding the buffer size and multibyte characters across buffer boundaries.
+        String longLine = "[1,\"Fahrgäste " + "x".repeat(100) + "\"]";
+        assertEquals(List.of("[0]", longLine, "[2,\"ä\"]"), readLines("[0]\n" + longLine + "\n[2,\"ä\"]\n", 16));
+
+        // Empty input.
+        assertEquals(List.of(), readLines("", 16));
+    }
+
+    @Test
+    void feedTest() throws IOException {
+        LineFramer framer = new LineFramer(null, 16);
+        List<String> lines = new ArrayList<>();
+
+        // Incomplete lines are held back until the next chunk arrives.
+        framer.feed(ByteBuffer.wrap("[4,\"1.0\"]\n[1,\"Fahrg".getBytes(UTF_8)));
+        collect(framer, lines);
+        assertEquals(List.of("[4,\"1.0\"]"), lines);
+
+        framer.feed(ByteBuffer.wrap("äste\"]\r\n[2]".getBytes(UTF_8)));
+        collect(framer, lines);
+        assertEquals(List.of("[4,\"1.0\"]", "[1,\"Fahrgäste\"]"), lines);
+
+        // Trailing line is returned after the end of input.
+        framer.finish();
+        collect(framer, lines);
+        assertEquals(List.of("[4,\"1.0\"]", "[1,\"Fahrgäste\"]", "[2]"), lines);
+        assertFalse(framer.next(), "No more lines expected");
+    }
+
+    private static void collect(LineFramer framer, List<String> lines) throws IOException {
+        while (framer.next()) {
+            lines.add(new String(framer.buffer(), framer.offset(), framer.length(), UTF_8));
+        }
+    }
+
+    private static List<String> readLines(String input, int bufferSize) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (LineFramer framer = new LineFramer(new ByteArrayInputStream(input.getBytes(UTF_8)), bufferSize)) {
+            while (framer.next()) {
+                lines.add(new String(framer.buffer(), framer.offset(), framer.length(), UTF_8));
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.UraClientConfiguration;
+import de.stklcode.pubtrans.ura.model.Trip;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link ParsePipeline}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class ParsePipelineTest {
+    private static final String TRIP = "[1,\"Campus Melaten\",\"100629\",\"\",0,50.78247,6.05053,4,\"764\",\"3B\",\"2\"," +
+        "\"Ponttor-Hbf.-Schanz\",\"Ponttor-Hbf.-Schanz\",327001,%d,%d]";
+
+    @Test
+    void orderTest() throws InterruptedException {
+        CollectingTarget target = new CollectingTarget();
+        try (ParsePipeline pipeline = new ParsePipeline(4)) {
+            // Interleaved updates for 8 trips, mixed with other line types.
+            dispatch(pipeline, "[4,\"1.0\",1542370828725]", target);
+            for (long time = 0; time < 100; time++) {
+                for (long trip = 1; trip <= 8; trip++) {
+                    dispatch(pipeline, String.format(TRIP, trip, time), target);
+                }
+                dispatch(pipeline, "[0,\"Stollenweg\",\"100210\",null,0,50.7822619,6.1557408]", target);
+            }
+            dispatch(pipeline, "", target);
+            target.await(800);
+        }
+
+        assertEquals(8, target.trips.size(), "Unexpected number of trips");
+        target.trips.forEach((id, times) -> assertEquals(
+            LongStream.range(0, 100).boxed().toList(),
+            times,
+            "Predictions of trip " + id + " not delivered in order"
+        ));
+        assertTrue(target.errors.isEmpty(), "No errors expected");
+    }
+
+    @Test
+    void errorTest() throws InterruptedException {
+        CollectingTarget target = new CollectingTarget();
+        try (ParsePipeline pipeline = new ParsePipeline(2)) {
+            dispatch(pipeline, "{\"foo\":1}", target);
+            dispatch(pipeline, String.format(TRIP, 1, 1).replace(",4,", ",\"4\","), target);
+            for (int i = 0; i < 100 && target.errors.size() < 2; i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(2, target.errors.size(), "Invalid lines should be reported");
+            assertInstanceOf(IOException.class, target.errors.peek(), "Unexpected error type");
+
+            // Lines of inactive targets are skipped.
+            target.active = false;
+            dispatch(pipeline, String.format(TRIP, 1, 2), target);
+            TimeUnit.MILLISECONDS.sleep(100);
+            assertTrue(target.trips.isEmpty(), "Trips should not be decoded for inactive targets");
+        }
+    }
+
+    @Test
+    void singleProducerConsumerTest() {
+        URI uri = URI.create("http://localhost/interfaces/ura/stream_V1");
+        UraClientConfiguration config = UraClientConfiguration.forBaseURL("http://localhost")
+            .withParseParallelism(2)
+            .build();
+        List<Trip> trips = new CopyOnWriteArrayList<>();
+
+        try (RingBufferConsumer<Trip> ring = RingBufferConsumer.forConsumers(List.<Consumer<Trip>>of(trips::add)).build();
+             QueuedConsumer<Trip> queued = QueuedConsumer.forConsumer(ring).build();
+             UraStreamHub hub = new UraStreamHub(uri, config, null)) {
+            // Ring buffer consumers are rejected with parallel parsing, unless they are wrapped in a queued consumer.
+            assertThrows(
+                IllegalArgumentException.class,
+                () -> new AsyncUraTripReader(uri, config, List.of(ring)),
+                "Ring buffer consumer should be rejected with parallel parsing"
+            );
+            AsyncUraTripReader reader = new AsyncUraTripReader(uri, config, List.of(queued));
+            assertThrows(
+                IllegalArgumentException.class,
+                () -> reader.addConsumer(ring),
+                "Ring buffer consumer should be rejected with parallel parsing"
+            );
+            assertThrows(
+                IllegalArgumentException.class,
+                () -> hub.subscribe(TripFilter.all(), ring),
+                "Ring buffer consumer should be rejected by the hub with parallel parsing"
+            );
+
+            // Without parallel parsing.
+            assertDoesNotThrow(
+                () -> new AsyncUraTripReader(uri, List.of(ring)),
+                "Ring buffer consumer should be accepted without parallel parsing"
+            );
+        }
+    }
+
+    private static void dispatch(ParsePipeline pipeline, String line, ParsePipeline.Target target) {
+        byte[] raw = ("xx" + line + "yy").getBytes(UTF_8);
+        pipeline.dispatch(raw, 2, raw.length - 4, target);
+    }
+
+    private static class CollectingTarget implements ParsePipeline.Target {
+        private final Map<String, List<Long>> trips = new ConcurrentHashMap<>();
+        private final Queue<Exception> errors = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile boolean active = true;
+
+        @Override
+        public boolean active() {
+            return active;
+        }
+
+        @Override
+        public void decoded(Trip trip) {
+            trips.computeIfAbsent(trip.id(), k -> new CopyOnWriteArrayList<>()).add(trip.estimatedTime());
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            errors.add(cause);
+        }
+
+        private void await(int expected) throws InterruptedException {
+            for (int i = 0; i < 200 && count.get() < expected; i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(expected, count.get(), "Unexpected number of decoded trips");
+        }
+    }
+}
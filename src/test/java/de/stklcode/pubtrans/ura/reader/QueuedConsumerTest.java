@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link QueuedConsumer}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class QueuedConsumerTest {
+    @Test
+    void blockTest() throws InterruptedException {
+        List<Integer> items = new CopyOnWriteArrayList<>();
+        try (QueuedConsumer<Integer> consumer = QueuedConsumer.forConsumer((Integer i) -> items.add(i))
+            .withCapacity(2)
+            .build()) {
+            for (int i = 0; i < 100; i++) {
+                consumer.accept(i);
+            }
+            awaitDelivered(consumer, 100);
+            assertEquals(0, consumer.dropped(), "No items should be dropped when blocking");
+            assertEquals(0, consumer.lag(), "Queue should be empty");
+        }
+        assertEquals(IntStream.range(0, 100).boxed().toList(), items, "Items should be delivered in order");
+    }
+
+    @Test
+    void failureTest() throws InterruptedException {
+        List<Integer> items = new CopyOnWriteArrayList<>();
+        try (QueuedConsumer<Integer> consumer = QueuedConsumer.forConsumer((Integer i) -> {
+                if (i == 1) {
+                    throw new IllegalStateException("test");
+                } else if (i == 2) {
+                    throw new AssertionError("test");
+                }
+                items.add(i);
+            })
+            .withCapacity(2)
+            .build()) {
+            // Failures do not stall the consumer, so a blocked producer proceeds.
+            for (int i = 0; i < 10; i++) {
+                consumer.accept(i);
+            }
+            for (int i = 0; i < 100 && consumer.delivered() + consumer.failed() < 10; i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(2, consumer.failed(), "Unexpected number of failed items");
+        }
+        assertEquals(List.of(0, 3, 4, 5, 6, 7, 8, 9), items, "Failure should not stop the consumer");
+    }
+
+    @Test
+    void dropOldestTest() throws InterruptedException {
+        assertEquals(List.of(0, 4, 5), fillBlocked(OverflowPolicy.DROP_OLDEST), "Oldest items should have been dropped");
+    }
+
+    @Test
+    void dropNewestTest() throws InterruptedException {
+        assertEquals(List.of(0, 1, 2), fillBlocked(OverflowPolicy.DROP_NEWEST), "Newest items should have been dropped");
+    }
+
+    @Test
+    void closeTest() {
+        List<Integer> items = new CopyOnWriteArrayList<>();
+        QueuedConsumer<Integer> consumer = QueuedConsumer.forConsumer((Integer i) -> items.add(i))
+            .withExecutor(Runnable::run)
+            .build();
+        consumer.accept(1);
+        consumer.close();
+        consumer.accept(2);
+        assertEquals(List.of(1), items, "Items should not be delivered after closing");
+        assertEquals(1, consumer.delivered(), "Unexpected number of delivered items");
+        assertEquals(1, consumer.dropped(), "Items should be dropped after closing");
+    }
+
+    @Test
+    void rejectedTest() {
+        List<Integer> items = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        try (QueuedConsumer<Integer> consumer = QueuedConsumer.forConsumer((Integer i) -> items.add(i))
+            .withCapacity(1)
+            .withExecutor(executor)
+            .build()) {
+            // Items are dropped instead of blocking the producer on the full queue.
+            assertDoesNotThrow(() -> consumer.accept(1), "Rejected execution should not be passed to the producer");
+            assertDoesNotThrow(() -> consumer.accept(2), "Rejected execution should not be passed to the producer");
+            assertEquals(2, consumer.dropped(), "Rejected items should be dropped");
+            assertEquals(0, consumer.lag(), "Queue should be empty");
+        }
+        assertTrue(items.isEmpty(), "No items should be delivered");
+    }
+
+    /**
+     * Pass items 0 to 5 to a consumer with capacity 2, whose delegate is blocked while processing the first item.
+     *
+     * @param overflowPolicy Overflow policy.
+     * @return Items passed to the delegate.
+     * @throws InterruptedException Thread interrupted.
+     */
+    private static List<Integer> fillBlocked(OverflowPolicy overflowPolicy) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> items = new CopyOnWriteArrayList<>();
+        try (QueuedConsumer<Integer> consumer = QueuedConsumer.forConsumer((Integer i) -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                items.add(i);
+            })
+            .withCapacity(2)
+            .withOverflowPolicy(overflowPolicy)
+            .build()) {
+            consumer.accept(0);
+            assertTrue(started.await(1, TimeUnit.SECONDS), "Delegate not invoked");
+            for (int i = 1; i <= 5; i++) {
+                consumer.accept(i);
+            }
+            assertEquals(2, consumer.lag(), "Unexpected lag");
+            assertEquals(3, consumer.dropped(), "Unexpected number of dropped items");
+
+            release.countDown();
+            awaitDelivered(consumer, 3);
+        }
+        return items;
+    }
+
+    private static void awaitDelivered(QueuedConsumer<?> consumer, long count) throws InterruptedException {
+        for (int i = 0; i < 100 && consumer.delivered() < count; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(count, consumer.delivered(), "Unexpected number of delivered items");
+    }
+}
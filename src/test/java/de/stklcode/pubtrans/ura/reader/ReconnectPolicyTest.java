@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link ReconnectPolicy}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class ReconnectPolicyTest {
+    @Test
+    void delayTest() {
+        // Without jitter, delays grow exponentially up to the maximum.
+        ReconnectPolicy policy = ReconnectPolicy.builder()
+            .withInitialDelay(Duration.ofMillis(100))
+            .withMaxDelay(Duration.ofMillis(1000))
+            .withMultiplier(3.0)
+            .withJitter(0.0)
+            .build();
+        assertEquals(Duration.ofMillis(100), policy.delay(1));
+        assertEquals(Duration.ofMillis(300), policy.delay(2));
+        assertEquals(Duration.ofMillis(900), policy.delay(3));
+        assertEquals(Duration.ofMillis(1000), policy.delay(4));
+        assertEquals(Integer.MAX_VALUE, policy.maxAttempts(), "Unexpected default number of attempts");
+
+        // With jitter, delays are reduced by a random fraction.
+        policy = ReconnectPolicy.builder()
+            .withInitialDelay(Duration.ofMillis(1000))
+            .withJitter(0.5)
+            .build();
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.delay(1).toMillis();
+            assertTrue(delay >= 500 && delay <= 1000, "Jittered delay out of range: " + delay);
+        }
+    }
+
+    @Test
+    void validationTest() {
+        ReconnectPolicy.Builder builder = ReconnectPolicy.builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.withMultiplier(0.5).build(), "Multiplier < 1 accepted");
+        assertThrows(IllegalArgumentException.class, () -> builder.withMultiplier(2.0).withJitter(1.5).build(), "Jitter > 1 accepted");
+        assertThrows(IllegalArgumentException.class, () -> builder.withJitter(0.5).withMaxAttempts(-1).build(), "Negative attempts accepted");
+        assertThrows(IllegalArgumentException.class, () -> builder.withMaxAttempts(1).withMaxDelay(Duration.ZERO).build(), "Max delay < initial delay accepted");
+        assertThrows(NullPointerException.class, () -> builder.withMaxDelay(null).build(), "Null delay accepted");
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link RingBufferConsumer}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class RingBufferConsumerTest {
+    @Test
+    void dispatchTest() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            List<Integer> items1 = new CopyOnWriteArrayList<>();
+            List<Integer> items2 = new CopyOnWriteArrayList<>();
+            try (RingBufferConsumer<Integer> consumer = RingBufferConsumer.forConsumers(
+                    List.<Consumer<Integer>>of(items1::add, items2::add)
+                )
+                .withCapacity(8)
+                .withWaitStrategy(waitStrategy)
+                .build()) {
+                // Publish more items than slots, so the producer has to wait for the consumers.
+                for (int i = 0; i < 1000; i++) {
+                    consumer.accept(i);
+                }
+                assertEquals(999, consumer.cursor(), "Unexpected cursor");
+                awaitLag(consumer, 0);
+                awaitLag(consumer, 1);
+            }
+
+            List<Integer> expected = IntStream.range(0, 1000).boxed().toList();
+            assertEquals(expected, items1, "Items should be delivered in order to first consumer (" + waitStrategy + ")");
+            assertEquals(expected, items2, "Items should be delivered in order to second consumer (" + waitStrategy + ")");
+        }
+    }
+
+    @Test
+    void lagTest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> items = new CopyOnWriteArrayList<>();
+        try (RingBufferConsumer<Integer> consumer = RingBufferConsumer.forConsumers(List.<Consumer<Integer>>of(
+                i -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                i -> {
+                    if (i == 2) {
+                        throw new IllegalStateException("test");
+                    } else if (i == 5) {
+                        throw new AssertionError("test");
+                    }
+                    items.add(i);
+                }
+            ))
+            .withCapacity(4)
+            .build()) {
+            for (int i = 0; i < 4; i++) {
+                consumer.accept(i);
+            }
+            awaitLag(consumer, 1);
+            assertEquals(4, consumer.lag(0), "Blocked consumer should lag behind");
+
+            release.countDown();
+            awaitLag(consumer, 0);
+            assertEquals(1, consumer.failed(), "Unexpected number of failed items");
+            assertEquals(List.of(0, 1, 3), items, "Failure should not stop the consumer");
+
+            // Errors do not stop the consumer either, so the producer is not blocked.
+            for (int i = 4; i < 12; i++) {
+                consumer.accept(i);
+            }
+            awaitLag(consumer, 1);
+            assertEquals(2, consumer.failed(), "Unexpected number of failed items");
+            assertEquals(List.of(0, 1, 3, 4, 6, 7, 8, 9, 10, 11), items, "Error should not stop the consumer");
+
+            consumer.close();
+            consumer.accept(12);
+            assertEquals(1, consumer.dropped(), "Items should be dropped after closing");
+        }
+    }
+
+    @Test
+    void closeTest() throws InterruptedException {
+        // Close while publishing, so each item is either delivered to all consumers or dropped.
+        for (int round = 0; round < 50; round++) {
+            AtomicInteger count1 = new AtomicInteger();
+            AtomicInteger count2 = new AtomicInteger();
+            RingBufferConsumer<Integer> consumer = RingBufferConsumer.forConsumers(
+                    List.<Consumer<Integer>>of(i -> count1.incrementAndGet(), i -> count2.incrementAndGet())
+                )
+                .withCapacity(16)
+                .withWaitStrategy(WaitStrategy.YIELD)
+                .build();
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    consumer.accept(i);
+                }
+            });
+            producer.start();
+            while (consumer.cursor() < round * 100L && producer.isAlive()) {
+                Thread.onSpinWait();
+            }
+            consumer.close();
+            producer.join(5000);
+
+            long dropped = consumer.dropped();
+            for (int i = 0; i < 100 && Math.min(count1.get(), count2.get()) + dropped < 10000; i++) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(10000, count1.get() + dropped, "Items lost by first consumer");
+            assertEquals(10000, count2.get() + dropped, "Items lost by second consumer");
+        }
+    }
+
+    @Test
+    void capacityTest() {
+        List<Consumer<Integer>> delegates = List.of(i -> { });
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> RingBufferConsumer.forConsumers(delegates).withCapacity(1000).build(),
+            "Capacity must be a power of 2"
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> RingBufferConsumer.<Integer>forConsumers(List.of()).build(),
+            "Consumers must not be empty"
+        );
+    }
+
+    private static void awaitLag(RingBufferConsumer<?> consumer, int index) throws InterruptedException {
+        for (int i = 0; i < 100 && consumer.lag(index) > 0; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(0, consumer.lag(index), "Consumer " + index + " should have caught up");
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link ServerClock}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class ServerClockTest {
+    @Test
+    void syncTest() {
+        ServerClock clock = new ServerClock();
+        assertEquals(0L, clock.offset(), "No offset expected initially");
+        assertEquals(ZoneOffset.UTC, clock.getZone(), "Unexpected zone");
+
+        // Server time one hour behind the local clock.
+        clock.sync(System.currentTimeMillis() - 3600000L);
+        assertTrue(Math.abs(clock.offset() + 3600000L) < 1000L, "Unexpected offset");
+        long expected = System.currentTimeMillis() - 3600000L;
+        assertTrue(Math.abs(clock.millis() - expected) < 1000L, "Clock should follow the server time");
+        assertTrue(Math.abs(clock.instant().toEpochMilli() - expected) < 1000L, "Instant should follow the server time");
+        assertTrue(
+            Math.abs(clock.withZone(ZoneOffset.ofHours(1)).millis() - expected) < 1000L,
+            "Offset should be kept for other zones"
+        );
+    }
+}
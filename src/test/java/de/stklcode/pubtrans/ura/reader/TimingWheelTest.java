@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link TimingWheel}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class TimingWheelTest {
+    private static final long NOW = 1542372000000L;
+
+    @Test
+    void expiryTest() {
+        MutableClock clock = new MutableClock(NOW);
+        TimingWheel<Long> wheel = TimingWheel.<Long>builder()
+            .withTick(Duration.ofSeconds(1))
+            .withClock(clock)
+            .build();
+        Map<Long, Long> expiredAt = new HashMap<>();
+        wheel.addListener(deadline -> expiredAt.put(deadline, clock.millis()));
+
+        // Deadlines on all levels, up to 30 days ahead.
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            long deadline = NOW + (long) (random.nextDouble() * Math.pow(10, 3 + random.nextInt(7)));
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+        assertEquals(1000, wheel.size(), "Unexpected number of scheduled items");
+
+        // Advance in irregular steps.
+        while (expiredAt.size() < deadlines.size() && clock.millis() < NOW + 3_000_000_000L) {
+            clock.set(clock.millis() + 1 + random.nextInt(5000));
+            wheel.advance();
+        }
+
+        assertEquals(0, wheel.size(), "All items should have expired");
+        for (long deadline : deadlines) {
+            Long time = expiredAt.get(deadline);
+            assertNotNull(time, "Item not expired");
+            assertTrue(time >= deadline, "Item expired too early");
+            assertTrue(time < deadline + 6000, "Item expired too late");
+        }
+    }
+
+    @Test
+    void cancelTest() {
+        MutableClock clock = new MutableClock(NOW);
+        TimingWheel<String> wheel = TimingWheel.<String>builder().withClock(clock).build();
+        List<String> expired = new ArrayList<>();
+        wheel.addListener(expired::add);
+
+        TimingWheel.Timeout<String> a = wheel.schedule("a", NOW + 1500);
+        TimingWheel.Timeout<String> b = wheel.schedule("b", NOW + 300000);
+        wheel.schedule("c", NOW - 1000);
+        assertTrue(b.isScheduled(), "Item should be scheduled");
+        assertTrue(b.cancel(), "Cancel should succeed");
+        assertFalse(b.cancel(), "Second cancel should fail");
+        assertEquals(2, wheel.size(), "Cancelled item should be removed");
+
+        // Items are not expired before the tick containing their deadline has passed.
+        clock.set(NOW + 1500);
+        assertEquals(1, wheel.advance(), "Past item should expire on the next tick");
+        assertEquals(List.of("c"), expired, "Unexpected expired items");
+        clock.set(NOW + 2000);
+        assertEquals(1, wheel.advance(), "Item should expire");
+        assertFalse(a.isScheduled(), "Expired item should not be scheduled");
+        assertFalse(a.cancel(), "Cancel of expired item should fail");
+
+        clock.set(NOW + 600000);
+        assertEquals(0, wheel.advance(), "Cancelled item should not expire");
+        assertEquals(List.of("c", "a"), expired, "Unexpected expired items");
+    }
+
+    @Test
+    void tickTest() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> TimingWheel.builder().withTick(Duration.ZERO).build(),
+            "Tick must be positive"
+        );
+    }
+}
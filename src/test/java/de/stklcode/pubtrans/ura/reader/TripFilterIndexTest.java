@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Stop;
+import de.stklcode.pubtrans.ura.model.Trip;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link TripFilterIndex}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class TripFilterIndexTest {
+    private static final Trip TRIP = new Trip(
+        new Stop("100308", "Eckenerstraße", "", 0, 50.7539658, 6.1541161),
+        "16000428004001", 15, "65", "65", 2, "Elisenbrunnen", "Elisenbrunnen", 1542372660000L, "301001"
+    );
+
+    @Test
+    void matchTest() {
+        Map<String, TripFilter> filters = new HashMap<>();
+        filters.put("stop", TripFilter.builder().forStops("100308", "100309").build());
+        filters.put("stopLine", TripFilter.builder().forStops("100308").forLines("65").build());
+        filters.put("stopOtherLine", TripFilter.builder().forStops("100308").forLines("3A").build());
+        filters.put("otherStop", TripFilter.builder().forStops("100309").build());
+        filters.put("line", TripFilter.builder().forLines("65").build());
+        filters.put("direction", TripFilter.builder().forDirection(2).build());
+        filters.put("otherDirection", TripFilter.builder().forDirection(1).build());
+        filters.put("destination", TripFilter.builder().forDestinationNames("Elisenbrunnen").build());
+        filters.put("all", TripFilter.all());
+
+        TripFilterIndex<String> index = new TripFilterIndex<>(filters::get);
+        filters.keySet().forEach(index::add);
+        assertEquals(9, index.size(), "Unexpected index size");
+
+        assertEquals(
+            Set.of("stop", "stopLine", "line", "direction", "destination", "all"),
+            matches(index),
+            "Unexpected matches"
+        );
+
+        assertTrue(index.remove("stop"), "Value not removed");
+        assertTrue(index.remove("all"), "Value not removed");
+        assertFalse(index.remove("all"), "Value removed twice");
+        assertEquals(7, index.size(), "Unexpected index size after removal");
+        assertEquals(Set.of("stopLine", "line", "direction", "destination"), matches(index), "Unexpected matches after removal");
+
+        index.clear();
+        assertEquals(0, index.size(), "Index not empty after clear");
+        assertTrue(matches(index).isEmpty(), "No matches expected after clear");
+    }
+
+    @Test
+    void candidatesTest() {
+        // Only the filters of candidate values are evaluated.
+        AtomicInteger evaluations = new AtomicInteger();
+        TripFilter matching = TripFilter.builder().forStops("100308").build();
+        TripFilter other = TripFilter.builder().forStops("other").build();
+        TripFilterIndex<Integer> index = new TripFilterIndex<>(i -> {
+            evaluations.incrementAndGet();
+            return i == 0 ? matching : other;
+        });
+        for (int i = 0; i < 1000; i++) {
+            index.add(i);
+        }
+        evaluations.set(0);
+
+        Set<Integer> matches = new HashSet<>();
+        index.forEachMatch(TRIP, matches::add);
+        assertEquals(Set.of(0), matches, "Unexpected matches");
+        assertEquals(1, evaluations.get(), "Only one candidate should have been evaluated");
+    }
+
+    private static Set<String> matches(TripFilterIndex<String> index) {
+        Set<String> matches = new HashSet<>();
+        index.forEachMatch(TRIP, m -> assertTrue(matches.add(m), "Duplicate match " + m));
+        return matches;
+    }
+}
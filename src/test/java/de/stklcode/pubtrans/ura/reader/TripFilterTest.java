@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Stop;
+import de.stklcode.pubtrans.ura.model.Trip;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link TripFilter}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class TripFilterTest {
+    private static final Trip TRIP = new Trip(
+        new Stop("100308", "Eckenerstraße", "", 0, 50.7539658, 6.1541161),
+        "16000428004001", 15, "65", "65", 2, "Elisenbrunnen", "Elisenbrunnen", 1542372660000L, "301001"
+    );
+
+    @Test
+    void filterTest() {
+        assertTrue(TripFilter.all().test(TRIP), "Empty filter should match");
+        assertTrue(TripFilter.builder().forStops("100308", "100309").build().test(TRIP), "Stop ID should match");
+        assertFalse(TripFilter.builder().forStops("100309").build().test(TRIP), "Stop ID should not match");
+        assertTrue(TripFilter.builder().forStopsByName("Eckenerstraße").build().test(TRIP), "Stop name should match");
+        assertTrue(TripFilter.builder().forLines("65", "65").build().test(TRIP), "Line ID should match");
+        assertFalse(TripFilter.builder().forLinesByName("3A").build().test(TRIP), "Line name should not match");
+        assertTrue(TripFilter.builder().forDirection(2).build().test(TRIP), "Direction should match");
+        assertFalse(TripFilter.builder().forDirection(1).build().test(TRIP), "Direction should not match");
+        assertTrue(TripFilter.builder().forDestinationNames("Elisenbrunnen").build().test(TRIP), "Destination should match");
+
+        // Criteria are combined with AND.
+        assertFalse(
+            TripFilter.builder().forStops("100308").forLines("3A").build().test(TRIP),
+            "Stop ID and line ID should not match"
+        );
+        assertTrue(
+            TripFilter.builder().forStops("100308").forLines("65").forDirection(2).build().test(TRIP),
+            "Stop ID, line ID and direction should match"
+        );
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016-2026 Stefan Kalscheuer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.stklcode.pubtrans.ura.reader;
+
+import de.stklcode.pubtrans.ura.model.Message;
+import de.stklcode.pubtrans.ura.model.Stop;
+import de.stklcode.pubtrans.ura.model.Trip;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the {@link UraLineDecoder}.
+ *
+ * @author Stefan Kalscheuer
+ */
+class UraLineDecoderTest {
+    private static final String TRIP_V1 = "[1,\"Fischbachstraße\",\"215812\",\"\",0,50.73893,6.2666311,6,\"8\",\"8\",1," +
+        "\"Eschweiler Bushof\",\"Eschweiler Bushof\",\"0\",\"27000165015001\",1482856620000]";
+    private static final String TRIP_V2 = "[1,\"Campus Melaten\",\"100629\",\"\",0,50.78247,6.05053,4,\"764\",\"3B\",\"2\"," +
+        "\"Ponttor-Hbf.-Schanz\",\"Ponttor-Hbf.-Schanz\",327001,16000304013001,1542375720000]";
+    private static final String STOP = "[0,\"Stollenweg\",\"100210\",null,0,50.7822619,6.1557408]";
+    private static final String MESSAGE = "[2,\"Berensberger Str.\",\"100707\",\"\",0,50.8087069,6.0607177," +
+        "\"016e1231d4e30014_100707\",0,3,\"Sehr geehrte Fahrgäste\"]";
+
+    @Test
+    void decodeTripTest() throws IOException {
+        UraLineDecoder decoder = new UraLineDecoder();
+        assertNull(decoder.version(), "Version should be empty initially");
+        assertEquals(0L, decoder.timestamp(), "Server time should be empty initially");
+        assertNull(decoder.decodeTrip("[4,\"1.0\",1542370828725]"), "Version line should not produce a trip");
+        assertEquals("1.0", decoder.version(), "Version not captured");
+        assertEquals(1542370828725L, decoder.timestamp(), "Server time not captured");
+
+        Trip trip = decoder.decodeTrip(TRIP_V1);
+        assertNotNull(trip, "Trip expected");
+        assertEquals("215812", trip.stop().id());
+        assertEquals("Fischbachstraße", trip.stop().name());
+        assertEquals("", trip.stop().indicator());
+        assertEquals(0, trip.stop().state());
+        assertEquals(50.73893, trip.stop().latitude());
+        assertEquals(6.2666311, trip.stop().longitude());
+        assertEquals(6, trip.visitID());
+        assertEquals("8", trip.lineID());
+        assertEquals("8", trip.lineName());
+        assertEquals(1, trip.directionID());
+        assertEquals("Eschweiler Bushof", trip.destinationName());
+        assertEquals("Eschweiler Bushof", trip.destinationText());
+        assertEquals("0", trip.vehicleID());
+        assertEquals("27000165015001", trip.id());
+        assertEquals(1482856620000L, trip.estimatedTime());
+
+        // Numeric IDs and direction as String.
+        byte[] raw = TRIP_V2.getBytes(UTF_8);
+        trip = decoder.decodeTrip(raw, 0, raw.length);
+        assertNotNull(trip, "Trip expected");
+        assertEquals(2, trip.directionID());
+        assertEquals("327001", trip.vehicleID());
+        assertEquals("16000304013001", trip.id());
+
+        // Other line types are skipped.
+        assertNull(decoder.decodeTrip(STOP), "Stop line should not produce a trip");
+        assertNull(decoder.decodeTrip(""), "Empty line should not produce a trip");
+        assertNull(decoder.decodeTrip("[]"), "Empty array should not produce a trip");
+
+        // Null vehicle ID is accepted (#3).
+        trip = decoder.decodeTrip(TRIP_V1.replace("\"0\",\"27000165015001\"", "null,\"27000165015001\""));
+        assertNotNull(trip, "Trip with null vehicle ID expected");
+        assertNull(trip.vehicleID());
+
+        // Invalid data.
+        assertThrows(IOException.class, () -> decoder.decodeTrip(TRIP_V1.replace(",1482856620000]", "]")),
+            "Decoding of too short line successful");
+        assertThrows(IOException.class, () -> decoder.decodeTrip(TRIP_V1.replace(",6,\"8\"", ",\"6\",\"8\"")),
+            "Decoding with invalid visitID successful");
+        assertThrows(IOException.class, () -> decoder.decodeTrip(TRIP_V1.replace("\"8\",1,", "\"8\",7,")),
+            "Decoding with direction ID 7 successful");
+        assertThrows(IOException.class, () -> decoder.decodeTrip(TRIP_V1.replace(",1482856620000]", ",1.5]")),
+            "Decoding with invalid estimatedTime successful");
+        assertThrows(IOException.class, () -> decoder.decodeTrip("{\"foo\":1}"),
+            "Decoding of non-array line successful");
+    }
+
+    @Test
+    void decodeStopTest() throws IOException {
+        UraLineDecoder decoder = new UraLineDecoder();
+        byte[] raw = ("foo" + STOP + "bar").getBytes(UTF_8);
+        Stop stop = decoder.decodeStop(raw, 3, raw.length - 6);
+        assertNotNull(stop, "Stop expected");
+        assertEquals("100210", stop.id());
+        assertEquals("Stollenweg", stop.name());
+        assertNull(stop.indicator());
+        assertEquals(0, stop.state());
+        assertEquals(50.7822619, stop.latitude());
+        assertEquals(6.1557408, stop.longitude());
+
+        assertNull(decoder.decodeStop(TRIP_V1), "Trip line should not produce a stop");
+        assertThrows(IOException.class, () -> decoder.decodeStop(STOP.replace("50.7822619", "50")),
+            "Decoding with integer latitude successful");
+    }
+
+    @Test
+    void decodeMessageTest() throws IOException {
+        UraLineDecoder decoder = new UraLineDecoder();
+        Message message = decoder.decodeMessage(MESSAGE);
+        assertNotNull(message, "Message expected");
+        assertEquals("100707", message.stop().id());
+        assertEquals("016e1231d4e30014_100707", message.uuid());
+        assertEquals(0, message.type());
+        assertEquals(3, message.priority());
+        assertEquals("Sehr geehrte Fahrgäste", message.text());
+
+        assertNull(decoder.decodeMessage(STOP), "Stop line should not produce a message");
+        assertThrows(IOException.class, () -> decoder.decodeMessage(MESSAGE.replace(",0,3,", ",\"0\",3,")),
+            "Decoding with invalid type successful");
+    }
+}